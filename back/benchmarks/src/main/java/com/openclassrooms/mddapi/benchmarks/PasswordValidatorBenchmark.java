@@ -0,0 +1,36 @@
+package com.openclassrooms.mddapi.benchmarks;
+
+import com.openclassrooms.mddapi.validation.PasswordValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation de la robustesse d'un mot de passe : valide, trop court, et long sans caractère spécial
+ * (pire cas des expressions {@code .*x.*}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordValidatorBenchmark {
+
+    @Param({"Passw0rd!", "Court1!", "UnMotDePasseTresLongSansAucunCaractereSpecial0123456789abcdefghij"})
+    public String password;
+
+    @Benchmark
+    public boolean isValid() {
+        return PasswordValidator.isValid(password);
+    }
+}
@@ -0,0 +1,117 @@
+package com.openclassrooms.mddapi.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.PostSummary;
+import com.openclassrooms.mddapi.models.Comment;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation Jackson d'une page de fil d'actualité : entités {@link Post} complètes (auteur, thème,
+ * commentaires et leurs auteurs) comparées aux {@link PostSummary} renvoyés par les listes.
+ * L'ObjectMapper est construit comme celui de Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int CONTENT_LENGTH = 2000;
+
+    @Param({"0", "10", "100"})
+    public int commentsPerPost;
+
+    private ObjectMapper objectMapper;
+    private Post post;
+    private List<Post> posts;
+    private List<PostSummary> summaries;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        Theme theme = new Theme();
+        theme.setId(1L);
+        theme.setName("java");
+        theme.setDescription("Tout sur Java");
+
+        List<User> authors = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            User author = new User();
+            author.setId(i);
+            author.setUsername("auteur" + i);
+            author.setEmail("auteur" + i + "@exemple.fr");
+            author.setPassword("hash");
+            author.setCreatedAt(LocalDateTime.now());
+            authors.add(author);
+        }
+
+        String content = "x".repeat(CONTENT_LENGTH);
+        posts = new ArrayList<>(PAGE_SIZE);
+        summaries = new ArrayList<>(PAGE_SIZE);
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            User author = authors.get((int) (id % authors.size()));
+            Post current = new Post();
+            current.setId(id);
+            current.setTitle("Article " + id);
+            current.setContent(content);
+            current.setCreatedAt(LocalDateTime.now());
+            current.setAuthor(author);
+            current.setTheme(theme);
+            List<Comment> comments = new ArrayList<>(commentsPerPost);
+            for (long c = 1; c <= commentsPerPost; c++) {
+                Comment comment = new Comment();
+                comment.setId(id * 1000 + c);
+                comment.setContent("Commentaire " + c);
+                comment.setCreatedAt(LocalDateTime.now());
+                comment.setAuthor(authors.get((int) (c % authors.size())));
+                comment.setPost(current);
+                comments.add(comment);
+            }
+            current.setComments(comments);
+            posts.add(current);
+            summaries.add(new PostSummary(id, current.getTitle(), content.substring(0, PostSummary.EXCERPT_LENGTH),
+                    current.getCreatedAt(), author.getId(), author.getUsername(), theme.getId(), theme.getName(),
+                    (long) commentsPerPost));
+        }
+        post = posts.get(0);
+    }
+
+    @Benchmark
+    public byte[] postDetail() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    @Benchmark
+    public byte[] feedPageOfPosts() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(posts);
+    }
+
+    @Benchmark
+    public byte[] feedPageOfSummaries() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.mddapi.controllers;
+
+import com.openclassrooms.mddapi.dto.UserDto;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion d'un utilisateur en {@link UserDto} selon le nombre de thèmes suivis.
+ * Placé dans le paquet des contrôleurs : {@code convertToDto} n'y est visible qu'au niveau paquet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDtoConversionBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int followedThemes;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new User();
+        user.setId(1L);
+        user.setUsername("utilisateur");
+        user.setEmail("utilisateur@exemple.fr");
+        user.setCreatedAt(LocalDateTime.now());
+        Set<Theme> themes = new HashSet<>();
+        for (long i = 1; i <= followedThemes; i++) {
+            Theme theme = new Theme();
+            theme.setId(i);
+            theme.setName("theme-" + i);
+            themes.add(theme);
+        }
+        user.setFollowedThemes(themes);
+    }
+
+    @Benchmark
+    public UserDto convertToDto() {
+        return UserController.convertToDto(user);
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.mddapi.actuator;
+
+import com.openclassrooms.mddapi.services.TimelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reconstruction de tous les fils matérialisés, sur le port d'administration :
+ * {@code POST /actuator/timelines}. Les fils vivant dans la mémoire du serveur, la commande s'adresse
+ * à l'instance en cours d'exécution.
+ * <p>
+ * Aucun rôle ne distingue les administrateurs : l'endpoint n'est pas exposé par défaut et ne doit l'être
+ * ({@code MANAGEMENT_ENDPOINTS}) que si le port d'administration n'est pas joignable depuis l'extérieur.
+ */
+@Component
+@Endpoint(id = "timelines")
+public class TimelineEndpoint {
+
+    private final TimelineService timelineService;
+
+    @Autowired
+    public TimelineEndpoint(TimelineService timelineService) {
+        this.timelineService = timelineService;
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuildAll() {
+        if (!timelineService.isEnabled()) {
+            return Collections.singletonMap("rebuilt", 0);
+        }
+        return Collections.singletonMap("rebuilt", timelineService.rebuildAll());
+    }
+}
@@ -0,0 +1,435 @@
+package com.openclassrooms.mddapi.bulkimport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.ImportReport;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.services.PostSearchIndex;
+import com.openclassrooms.mddapi.services.ThemeCatalog;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
+import com.openclassrooms.mddapi.services.TimelineService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Import en masse d'articles et de commentaires (reprise de l'ancien forum), hors JPA.
+ * <p>
+ * Les identifiants {@code IDENTITY} empêchent Hibernate de grouper les insertions : l'import écrit donc par lots
+ * JDBC (avec {@code rewriteBatchedStatements=true}, MySQL reçoit une seule requête multi-lignes par lot) et
+ * valide par tranches de {@code import.chunk-size} enregistrements. Auteurs (par nom d'utilisateur) et thèmes
+ * (par nom) sont résolus en mémoire ; les commentaires désignent leur article par son identifiant d'origine,
+ * qui doit apparaître plus haut dans le même import.
+ * <p>
+ * Format des enregistrements, identique à celui des exports : champ {@code type} ({@code post} ou {@code comment},
+ * les autres types sont ignorés), {@code id}, {@code title}, {@code content}, {@code createdAt}, {@code updatedAt},
+ * {@code authorUsername}, {@code themeName} pour les articles, {@code postId} pour les commentaires.
+ */
+@Service
+public class BulkImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImporter.class);
+
+    private static final String INSERT_POST = "INSERT INTO article "
+            + "(titre, contenu, date_creation, date_modification, auteur_id, theme_id, version, comment_count) "
+            + "VALUES (?, ?, ?, ?, ?, ?, 0, 0)";
+    private static final String INSERT_COMMENT = "INSERT INTO commentaire "
+            + "(contenu, date_commentaire, date_modification, auteur_id, article_id, version) "
+            + "VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String ADD_COMMENT_COUNT = "UPDATE article SET comment_count = comment_count + ? WHERE id = ?";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThemeCatalog themeCatalog;
+    private final PostSearchIndex postSearchIndex;
+    private final TimelineService timelineService;
+    private final ThemeStatsService themeStatsService;
+    private final int batchSize;
+    private final int chunkSize;
+    private final boolean refreshMemory;
+    private final Counter importedPosts;
+    private final Counter importedComments;
+
+    @Autowired
+    public BulkImporter(DataSource dataSource, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                        ThemeCatalog themeCatalog, PostSearchIndex postSearchIndex, TimelineService timelineService,
+                        ThemeStatsService themeStatsService, MeterRegistry meterRegistry,
+                        @Value("${import.batch-size:1000}") int batchSize,
+                        @Value("${import.chunk-size:10000}") int chunkSize,
+                        @Value("${import.exit-on-complete:true}") boolean exitOnComplete) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.themeCatalog = themeCatalog;
+        this.postSearchIndex = postSearchIndex;
+        this.timelineService = timelineService;
+        this.themeStatsService = themeStatsService;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+        // Processus arrêté après l'import : sa mémoire n'est plus lue, inutile de la mettre à jour
+        this.refreshMemory = !exitOnComplete;
+        this.importedPosts = Counter.builder("import.rows").tag("type", "post").register(meterRegistry);
+        this.importedComments = Counter.builder("import.rows").tag("type", "comment").register(meterRegistry);
+    }
+
+    public ImportReport importNdjson(InputStream in) throws IOException {
+        try (MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+            return importRecords(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return nodes.hasNext();
+                }
+
+                @Override
+                public Map<String, String> next() {
+                    Map<String, String> record = new HashMap<>();
+                    nodes.next().fields().forEachRemaining(field ->
+                            record.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText()));
+                    return record;
+                }
+            });
+        }
+    }
+
+    public ImportReport importCsv(InputStream in) {
+        return importRecords(new CsvRecordReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Importe les enregistrements ; un échec annule la tranche en cours, les tranches précédentes restent validées.
+     *
+     * @throws IllegalArgumentException si un enregistrement est illisible
+     */
+    public ImportReport importRecords(Iterator<Map<String, String>> records) {
+        long start = System.currentTimeMillis();
+        ImportReport report = new ImportReport();
+        Map<String, Long> authors = loadAuthors();
+        // Thèmes ayant reçu des articles, y compris dans une tranche validée avant un échec
+        Set<Long> themeIds = new HashSet<>();
+        // Articles et commentaires validés ; le bilan compte aussi ceux de la tranche annulée en cas d'échec
+        long[] committed = new long[2];
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            long read = 0;
+            try (Batches batches = new Batches(connection, report, authors, themeIds)) {
+                Map<String, String> record;
+                while ((record = nextRecord(records, read + 1)) != null) {
+                    read++;
+                    batches.add(record, read);
+                    if (read % chunkSize == 0) {
+                        batches.flush();
+                        connection.commit();
+                        committed[0] = report.getPosts();
+                        committed[1] = report.getComments();
+                        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                        log.info("Import : {} enregistrements lus, {} articles et {} commentaires validés ({} lignes/s)",
+                                read, report.getPosts(), report.getComments(),
+                                (report.getPosts() + report.getComments()) * 1000 / elapsed);
+                    }
+                }
+                batches.flush();
+                connection.commit();
+                committed[0] = report.getPosts();
+                committed[1] = report.getComments();
+            } catch (IllegalArgumentException e) {
+                connection.rollback();
+                throw e;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw new IllegalStateException("Import interrompu à l'enregistrement " + read
+                        + ", la tranche en cours a été annulée", e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Import impossible : " + e.getMessage(), e);
+        } finally {
+            // Les tranches validées avant un échec sont en base : la mémoire est mise à jour dans tous les cas
+            refresh(committed[0], committed[1], themeIds);
+        }
+
+        report.setDurationMillis(System.currentTimeMillis() - start);
+        log.info("Import terminé en {} ms : {} articles, {} commentaires, {} ignorés, {} rejetés ({} lignes/s)",
+                report.getDurationMillis(), report.getPosts(), report.getComments(), report.getIgnored(),
+                report.getRejected(), report.getRowsPerSecond());
+        return report;
+    }
+
+    // Structures en mémoire construites à partir des articles et des commentaires ; le catalogue
+    // des thèmes n'est pas concerné, l'import ne crée pas de thème
+    private void refresh(long posts, long comments, Set<Long> themeIds) {
+        if (!refreshMemory) {
+            return;
+        }
+        if (posts > 0) {
+            if (postSearchIndex.isEnabled()) {
+                postSearchIndex.rebuild();
+            }
+            // Seuls les fils des abonnés des thèmes importés sont rechargés, à leur prochaine lecture
+            timelineService.invalidateFollowers(themeIds);
+        }
+        if (posts > 0 || comments > 0) {
+            themeStatsService.reconcile();
+        }
+    }
+
+    // Entrée mal formée : IllegalArgumentException, la tranche en cours est annulée
+    private static Map<String, String> nextRecord(Iterator<Map<String, String>> records, long number) {
+        try {
+            return records.hasNext() ? records.next() : null;
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Enregistrement " + number + " illisible, tranche en cours annulée : "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Long> loadAuthors() {
+        Map<String, Long> authors = new HashMap<>();
+        jdbcTemplate.query("SELECT id, username FROM utilisateur",
+                rs -> { authors.put(normalize(rs.getString(2)), rs.getLong(1)); });
+        return authors;
+    }
+
+    // Comme la collation des colonnes : insensible à la casse
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Timestamp timestamp(String value, Timestamp defaultValue) {
+        return value == null ? defaultValue : Timestamp.valueOf(LocalDateTime.parse(value));
+    }
+
+    /**
+     * Lots en attente d'écriture et correspondance des identifiants d'articles d'origine.
+     */
+    private final class Batches implements AutoCloseable {
+        private final ImportReport report;
+        private final Map<String, Long> authors;
+        private final Set<Long> themeIds;
+        private final PreparedStatement insertPost;
+        private final PreparedStatement insertComment;
+        private final PreparedStatement addCommentCount;
+
+        private final List<PendingRow> pendingPosts = new ArrayList<>();
+        private final List<PendingRow> pendingComments = new ArrayList<>();
+        // Identifiant d'origine → identifiant créé
+        private final Map<String, Long> postIds = new HashMap<>();
+
+        Batches(Connection connection, ImportReport report, Map<String, Long> authors, Set<Long> themeIds)
+                throws SQLException {
+            this.report = report;
+            this.authors = authors;
+            this.themeIds = themeIds;
+            this.insertPost = connection.prepareStatement(INSERT_POST, Statement.RETURN_GENERATED_KEYS);
+            this.insertComment = connection.prepareStatement(INSERT_COMMENT);
+            this.addCommentCount = connection.prepareStatement(ADD_COMMENT_COUNT);
+        }
+
+        void add(Map<String, String> record, long number) throws SQLException {
+            String type = record.get("type");
+            if ("post".equals(type)) {
+                addPost(record, number);
+            } else if ("comment".equals(type)) {
+                addComment(record, number);
+            } else {
+                report.addIgnored();
+            }
+        }
+
+        private void addPost(Map<String, String> record, long number) throws SQLException {
+            String title = record.get("title");
+            String content = record.get("content");
+            if (title == null || content == null) {
+                report.reject("Enregistrement " + number + " : titre ou contenu manquant");
+                return;
+            }
+            Long authorId = author(record, number);
+            if (authorId == null) {
+                return;
+            }
+            Long themeId = null;
+            String themeName = record.get("themeName");
+            if (themeName != null) {
+                Optional<Theme> theme = themeCatalog.findByName(themeName);
+                if (theme.isEmpty()) {
+                    report.reject("Enregistrement " + number + " : thème inconnu '" + themeName + "'");
+                    return;
+                }
+                themeId = theme.get().getId();
+                themeIds.add(themeId);
+            }
+            Timestamp[] dates = dates(record, number);
+            if (dates == null) {
+                return;
+            }
+            pendingPosts.add(new PendingRow(record.get("id"), number,
+                    new Object[]{title, content, dates[0], dates[1], authorId, themeId}));
+            if (pendingPosts.size() >= batchSize) {
+                flushPosts();
+            }
+        }
+
+        private void addComment(Map<String, String> record, long number) throws SQLException {
+            String content = record.get("content");
+            String postId = record.get("postId");
+            if (content == null || postId == null) {
+                report.reject("Enregistrement " + number + " : contenu ou article manquant");
+                return;
+            }
+            Long authorId = author(record, number);
+            if (authorId == null) {
+                return;
+            }
+            Timestamp[] dates = dates(record, number);
+            if (dates == null) {
+                return;
+            }
+            pendingComments.add(new PendingRow(postId, number, new Object[]{content, dates[0], dates[1], authorId}));
+            if (pendingComments.size() >= batchSize) {
+                flushComments();
+            }
+        }
+
+        private Long author(Map<String, String> record, long number) {
+            String username = record.get("authorUsername");
+            Long authorId = username != null ? authors.get(normalize(username)) : null;
+            if (authorId == null) {
+                report.reject("Enregistrement " + number + " : auteur inconnu '" + username + "'");
+            }
+            return authorId;
+        }
+
+        // Date de création (maintenant par défaut) et de modification (absente si identique à la création)
+        private Timestamp[] dates(Map<String, String> record, long number) {
+            try {
+                Timestamp createdAt = timestamp(record.get("createdAt"), new Timestamp(System.currentTimeMillis()));
+                Timestamp updatedAt = timestamp(record.get("updatedAt"), null);
+                return new Timestamp[]{createdAt, createdAt.equals(updatedAt) ? null : updatedAt};
+            } catch (DateTimeParseException e) {
+                report.reject("Enregistrement " + number + " : date invalide (" + e.getParsedString() + ")");
+                return null;
+            }
+        }
+
+        void flush() throws SQLException {
+            flushPosts();
+            flushComments();
+        }
+
+        private void flushPosts() throws SQLException {
+            if (pendingPosts.isEmpty()) {
+                return;
+            }
+            for (PendingRow row : pendingPosts) {
+                setAll(insertPost, row.values);
+                insertPost.addBatch();
+            }
+            insertPost.executeBatch();
+            try (ResultSet keys = insertPost.getGeneratedKeys()) {
+                for (PendingRow row : pendingPosts) {
+                    if (!keys.next()) {
+                        throw new SQLException("Identifiants générés manquants pour le lot d'articles");
+                    }
+                    if (row.reference != null) {
+                        postIds.put(row.reference, keys.getLong(1));
+                    }
+                    report.addPost();
+                }
+            }
+            importedPosts.increment(pendingPosts.size());
+            pendingPosts.clear();
+        }
+
+        private void flushComments() throws SQLException {
+            if (pendingComments.isEmpty()) {
+                return;
+            }
+            // Les articles référencés peuvent être encore en attente
+            flushPosts();
+            Map<Long, Integer> addedByPost = new HashMap<>();
+            for (PendingRow row : pendingComments) {
+                Long postId = postIds.get(row.reference);
+                if (postId == null) {
+                    report.reject("Enregistrement " + row.number + " : article '" + row.reference + "' absent de l'import");
+                    continue;
+                }
+                setAll(insertComment, row.values);
+                insertComment.setLong(row.values.length + 1, postId);
+                insertComment.addBatch();
+                addedByPost.merge(postId, 1, Integer::sum);
+            }
+            int added = insertComment.executeBatch().length;
+            // Compteurs dénormalisés, dans la même tranche que les commentaires
+            for (Map.Entry<Long, Integer> entry : addedByPost.entrySet()) {
+                addCommentCount.setInt(1, entry.getValue());
+                addCommentCount.setLong(2, entry.getKey());
+                addCommentCount.addBatch();
+            }
+            addCommentCount.executeBatch();
+            report.addComments(added);
+            importedComments.increment(added);
+            pendingComments.clear();
+        }
+
+        private void setAll(PreparedStatement statement, Object[] values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            insertPost.close();
+            insertComment.close();
+            addCommentCount.close();
+        }
+    }
+
+    private static final class PendingRow {
+        // Identifiant d'origine de l'article (le sien ou celui commenté)
+        private final String reference;
+        private final long number;
+        private final Object[] values;
+
+        PendingRow(String reference, long number, Object[] values) {
+            this.reference = reference;
+            this.number = number;
+            this.values = values;
+        }
+    }
+}
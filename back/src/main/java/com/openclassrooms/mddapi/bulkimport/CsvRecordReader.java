@@ -0,0 +1,99 @@
+package com.openclassrooms.mddapi.bulkimport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lecture en flux d'un CSV (RFC 4180) : la première ligne donne les noms de colonnes, chaque ligne suivante
+ * est rendue sous forme de correspondance colonne → valeur. Les champs entre guillemets peuvent contenir
+ * virgules, retours à la ligne et guillemets doublés ; un champ vide vaut {@code null}.
+ */
+class CsvRecordReader implements Iterator<Map<String, String>> {
+
+    private final BufferedReader reader;
+    private final List<String> header;
+    private List<String> next;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+        List<String> firstLine = readRecord();
+        this.header = firstLine != null ? firstLine : List.of();
+        this.next = readRecord();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> record = new HashMap<>();
+        for (int i = 0; i < header.size() && i < next.size(); i++) {
+            String value = next.get(i);
+            record.put(header.get(i), value.isEmpty() ? null : value);
+        }
+        next = readRecord();
+        return record;
+    }
+
+    private List<String> readRecord() {
+        try {
+            int c = reader.read();
+            // Lignes vides ignorées
+            while (c == '\r' || c == '\n') {
+                c = reader.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("Guillemet non fermé en fin de fichier");
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.mddapi.bulkimport;
+
+import com.openclassrooms.mddapi.dto.ImportReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Import en ligne de commande : {@code --import.file=forum.ndjson} (ou {@code .csv}) importe le fichier au démarrage
+ * puis arrête l'application.
+ */
+@Component
+@ConditionalOnProperty(prefix = "import", name = "file")
+public class ImportCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportCommand.class);
+
+    private final BulkImporter bulkImporter;
+    private final Path file;
+    private final String format;
+    private final boolean exitOnComplete;
+
+    @Autowired
+    public ImportCommand(BulkImporter bulkImporter,
+                         @Value("${import.file}") Path file,
+                         @Value("${import.format:}") String format,
+                         @Value("${import.exit-on-complete:true}") boolean exitOnComplete) {
+        this.bulkImporter = bulkImporter;
+        this.file = file;
+        this.format = format;
+        this.exitOnComplete = exitOnComplete;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        int exitCode = 0;
+        // Format déduit de l'extension à défaut d'import.format
+        boolean csv = format.isEmpty() ? file.toString().toLowerCase().endsWith(".csv") : "csv".equalsIgnoreCase(format);
+        try (InputStream in = Files.newInputStream(file)) {
+            ImportReport report = csv ? bulkImporter.importCsv(in) : bulkImporter.importNdjson(in);
+            report.getErrors().forEach(error -> log.warn("Rejeté : {}", error));
+        } catch (Exception e) {
+            log.error("Échec de l'import de {}", file, e);
+            exitCode = 1;
+        }
+        if (exitOnComplete) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Cloison d'exécution asynchrone : un pool de threads et une file bornés, dédiés à une famille d'endpoints.
+ * <p>
+ * Le traitement quitte le thread Tomcat ({@link WebAsyncTask}) : une famille lente sature sa propre cloison
+ * et reçoit des 503, sans bloquer les workers Tomcat ni les autres familles. L'admission est décidée sur le
+ * thread appelant, avant le démarrage du traitement asynchrone : au-delà de {@code threads + queue-capacity}
+ * tâches en cours ou en attente, ou après le délai maximal, la requête échoue avec {@link BulkheadRejectedException}.
+ * <p>
+ * Les tâches d'une cloison de lecture s'exécutent dans une transaction en lecture seule (réplicas, voir
+ * {@link ReadWriteRoutingDataSource}) ; l'épinglage au primaire du thread appelant est conservé.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int capacity;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor executor;
+    private final AsyncTaskExecutor taskExecutor = new PermitReleasingExecutor();
+    private final long timeoutMillis;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer queueWait;
+    private final Timer execution;
+    private final Counter saturated;
+    private final Counter timeouts;
+
+    /**
+     * @param transactionTemplate transaction englobant chaque tâche, ou {@code null}
+     */
+    public Bulkhead(String name, int threads, int queueCapacity, Duration timeout,
+                    TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.capacity = threads + queueCapacity;
+        this.permits = new Semaphore(capacity);
+        this.timeoutMillis = timeout.toMillis();
+        this.transactionTemplate = transactionTemplate;
+
+        // File non bornée côté pool : la borne est tenue par les permis, acquis avant la soumission
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.queueWait = Timer.builder("bulkhead.queue.wait").tag("bulkhead", name).register(meterRegistry);
+        this.execution = Timer.builder("bulkhead.execution").tag("bulkhead", name).register(meterRegistry);
+        this.saturated = Counter.builder("bulkhead.rejected").tag("bulkhead", name).tag("reason", "saturated").register(meterRegistry);
+        this.timeouts = Counter.builder("bulkhead.rejected").tag("bulkhead", name).tag("reason", "timeout").register(meterRegistry);
+        Gauge.builder("bulkhead.queue.size", executor, pool -> pool.getQueue().size()).tag("bulkhead", name).register(meterRegistry);
+        Gauge.builder("bulkhead.active", executor, ThreadPoolExecutor::getActiveCount).tag("bulkhead", name).register(meterRegistry);
+        // Tâches en cours ou en attente rapportées à la capacité de la cloison, de 0 à 1
+        Gauge.builder("bulkhead.saturation", permits, p -> (double) (capacity - p.availablePermits()) / capacity)
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Exécute {@code task} dans la cloison ; le résultat est renvoyé au client une fois la tâche terminée.
+     *
+     * @throws BulkheadRejectedException si la cloison est pleine
+     */
+    public <T> WebAsyncTask<T> execute(Supplier<T> task) {
+        if (!permits.tryAcquire()) {
+            saturated.increment();
+            throw new BulkheadRejectedException(name, "saturée");
+        }
+        boolean pinnedToPrimary = ReadWriteRoutingDataSource.isPinnedToPrimary();
+        long submittedAt = System.nanoTime();
+
+        Callable<T> callable = () -> {
+            long startedAt = System.nanoTime();
+            queueWait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+            if (pinnedToPrimary) {
+                ReadWriteRoutingDataSource.pinToPrimary();
+            }
+            try {
+                return transactionTemplate == null ? task.get() : transactionTemplate.execute(status -> task.get());
+            } finally {
+                if (pinnedToPrimary) {
+                    ReadWriteRoutingDataSource.unpin();
+                }
+                execution.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        WebAsyncTask<T> asyncTask = new WebAsyncTask<>(timeoutMillis, taskExecutor, callable);
+        asyncTask.onTimeout(() -> {
+            timeouts.increment();
+            throw new BulkheadRejectedException(name, "délai dépassé");
+        });
+        return asyncTask;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Rend le permis quand le thread de la cloison a réellement fini la tâche. Une tâche annulée (délai dépassé)
+     * garde son permis tant qu'elle s'exécute encore ; annulée avant d'avoir démarré, elle est retirée de la file.
+     */
+    private final class PermitReleasingExecutor implements AsyncTaskExecutor {
+
+        @Override
+        public void execute(Runnable task) {
+            submit(task);
+        }
+
+        // Méthode dépréciée de l'interface, implémentée tant qu'elle n'en est pas retirée
+        @Deprecated
+        @Override
+        public void execute(Runnable task, long startTimeout) {
+            submit(task);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return submit(Executors.callable(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            FutureTask<T> future = new FutureTask<>(task) {
+                private final AtomicBoolean released = new AtomicBoolean();
+
+                @Override
+                public void run() {
+                    try {
+                        super.run();
+                    } finally {
+                        release();
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    // Retirée de la file : run() ne sera jamais appelé
+                    if (isCancelled() && executor.remove(this)) {
+                        release();
+                    }
+                }
+
+                private void release() {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+            };
+            try {
+                executor.execute(future);
+            } catch (RejectedExecutionException e) {
+                // Pool arrêté
+                permits.release();
+                throw e;
+            }
+            return future;
+        }
+    }
+}
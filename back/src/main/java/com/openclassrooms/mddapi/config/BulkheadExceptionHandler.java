@@ -0,0 +1,23 @@
+package com.openclassrooms.mddapi.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Traduit le rejet par une cloison (saturation ou délai dépassé) en 503 avec {@code Retry-After}.
+ */
+@RestControllerAdvice
+public class BulkheadExceptionHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @ExceptionHandler(BulkheadRejectedException.class)
+    public ResponseEntity<String> handleRejected(BulkheadRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body("Service momentanément surchargé, veuillez réessayer");
+    }
+}
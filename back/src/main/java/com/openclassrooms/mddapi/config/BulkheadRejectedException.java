@@ -0,0 +1,11 @@
+package com.openclassrooms.mddapi.config;
+
+/**
+ * Levée lorsqu'une cloison est pleine ou qu'une tâche dépasse son délai : la requête est rejetée (503).
+ */
+public class BulkheadRejectedException extends RuntimeException {
+
+    public BulkheadRejectedException(String bulkhead, String reason) {
+        super("Cloison " + bulkhead + " " + reason);
+    }
+}
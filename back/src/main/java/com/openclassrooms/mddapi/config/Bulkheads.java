@@ -0,0 +1,81 @@
+package com.openclassrooms.mddapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Cloisons des endpoints : connexion/inscription, listes (fils, pages d'articles), détails, écritures
+ * et exports.
+ * <p>
+ * Chaque cloison est dimensionnée par {@code async.bulkheads.<nom>.threads}, {@code .queue-capacity} et
+ * {@code .timeout}. Les cloisons de lecture exécutent leurs tâches en transaction lecture seule.
+ */
+@Component
+public class Bulkheads {
+
+    private final Bulkhead auth;
+    private final Bulkhead feedReads;
+    private final Bulkhead detailReads;
+    private final Bulkhead writes;
+    private final Bulkhead exports;
+
+    @Autowired
+    public Bulkheads(Environment environment, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        this.auth = create("auth", 8, 64, Duration.ofSeconds(10), null, environment, meterRegistry);
+        this.feedReads = create("feed", 16, 128, Duration.ofSeconds(5), readOnly, environment, meterRegistry);
+        this.detailReads = create("detail", 16, 128, Duration.ofSeconds(5), readOnly, environment, meterRegistry);
+        this.writes = create("write", 8, 64, Duration.ofSeconds(10), null, environment, meterRegistry);
+        // Exports en flux : peu nombreux mais longs, une connexion chacun pendant toute la durée
+        this.exports = create("export", 2, 8, Duration.ofMinutes(30), readOnly, environment, meterRegistry);
+    }
+
+    private static Bulkhead create(String name, int threads, int queueCapacity, Duration timeout,
+                                   TransactionTemplate transactionTemplate, Environment environment,
+                                   MeterRegistry meterRegistry) {
+        String prefix = "async.bulkheads." + name + ".";
+        return new Bulkhead(name,
+                environment.getProperty(prefix + "threads", Integer.class, threads),
+                environment.getProperty(prefix + "queue-capacity", Integer.class, queueCapacity),
+                environment.getProperty(prefix + "timeout", Duration.class, timeout),
+                transactionTemplate, meterRegistry);
+    }
+
+    public Bulkhead auth() {
+        return auth;
+    }
+
+    public Bulkhead feedReads() {
+        return feedReads;
+    }
+
+    public Bulkhead detailReads() {
+        return detailReads;
+    }
+
+    public Bulkhead writes() {
+        return writes;
+    }
+
+    public Bulkhead exports() {
+        return exports;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        auth.shutdown();
+        feedReads.shutdown();
+        detailReads.shutdown();
+        writes.shutdown();
+        exports.shutdown();
+    }
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.mddapi.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.mddapi.security.AuthenticatedUser;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Lecture de ses propres écritures : après une requête d'écriture, les requêtes du même utilisateur
+ * sont servies par le primaire pendant une courte fenêtre, le temps que les réplicas rattrapent leur retard.
+ * <p>
+ * Placé après la chaîne de sécurité pour connaître l'utilisateur. La fenêtre est mémorisée par instance :
+ * derrière un répartiteur de charge sans affinité, elle doit couvrir le retard de réplication habituel.
+ */
+public class PrimaryStickinessFilter extends OncePerRequestFilter {
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public PrimaryStickinessFilter(Duration window, long maxEntries) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Long userId = currentUserId();
+        if (userId != null && isWrite(request)) {
+            // Marqué dès le début : la réponse peut parvenir au client avant la fin du filtre
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+        boolean pinned = userId != null && recentWriters.getIfPresent(userId) != null;
+        if (pinned) {
+            ReadWriteRoutingDataSource.pinToPrimary();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (pinned) {
+                ReadWriteRoutingDataSource.unpin();
+            }
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof AuthenticatedUser)) {
+            return null;
+        }
+        return ((AuthenticatedUser) authentication.getPrincipal()).getId();
+    }
+}
@@ -0,0 +1,196 @@
+package com.openclassrooms.mddapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Source de données aiguillant les transactions en lecture seule vers les réplicas, le reste vers le primaire.
+ * <p>
+ * La décision est prise à l'obtention de la connexion : elle doit donc être enveloppée dans un
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} pour que le caractère
+ * lecture seule de la transaction soit connu à ce moment-là.
+ * <p>
+ * Retombe sur le primaire quand aucun réplica n'est sain, quand une connexion réplica échoue, ou quand
+ * le thread courant est épinglé au primaire (lecture de ses propres écritures, voir {@link #pinToPrimary()}).
+ * L'état des réplicas est vérifié périodiquement ; un réplica en échec est écarté jusqu'au contrôle suivant réussi.
+ * <p>
+ * Les métriques sont enregistrées en tant que {@link MeterBinder} : le registre dépend lui-même des sources
+ * de données et ne peut pas leur être injecté.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements MeterBinder, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Duration healthCheckInterval;
+    private final int healthCheckTimeoutSeconds;
+    private final ScheduledExecutorService healthChecker;
+
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder replicaRoutes = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources,
+                                      Duration healthCheckInterval, Duration healthCheckTimeout) {
+        this.primary = primary;
+        this.healthCheckInterval = healthCheckInterval;
+        this.healthCheckTimeoutSeconds = (int) Math.max(1, healthCheckTimeout.getSeconds());
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            replicas.add(new Replica("replica-" + (i + 1), replicaDataSources.get(i)));
+        }
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("datasource.routing", primaryRoutes, LongAdder::sum).tag("target", "primary").register(meterRegistry);
+        FunctionCounter.builder("datasource.routing", replicaRoutes, LongAdder::sum).tag("target", "replica").register(meterRegistry);
+        FunctionCounter.builder("datasource.routing.fallback", fallbacks, LongAdder::sum).register(meterRegistry);
+        for (Replica replica : replicas) {
+            Gauge.builder("datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+            // Métriques de pool hikaricp.* : les réplicas ne sont pas des beans, Spring Boot ne les instrumente pas
+            if (replica.dataSource instanceof HikariDataSource) {
+                HikariDataSource hikari = (HikariDataSource) replica.dataSource;
+                if (hikari.getMetricsTrackerFactory() == null && hikari.getMetricRegistry() == null) {
+                    hikari.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+                }
+            }
+        }
+    }
+
+    /**
+     * Épingle le thread courant au primaire jusqu'à {@link #unpin()}.
+     */
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PINNED_TO_PRIMARY.get());
+    }
+
+    public static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    public void start() {
+        checkReplicas();
+        long intervalMillis = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        healthChecker.shutdownNow();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = selectReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException e) {
+                markDown(replica, e);
+                fallbacks.increment();
+            }
+        }
+        primaryRoutes.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Identifiants explicites : usage d'administration, toujours sur le primaire
+        primaryRoutes.increment();
+        return primary.getConnection(username, password);
+    }
+
+    private Replica selectReplica() {
+        if (replicas.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || isPinnedToPrimary()) {
+            return null;
+        }
+        // Tourniquet sur les réplicas sains
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(healthCheckTimeoutSeconds)) {
+                    throw new SQLException("Connexion invalide");
+                }
+                if (!replica.healthy) {
+                    log.info("Réplica {} de nouveau disponible", replica.name);
+                }
+                replica.healthy = true;
+            } catch (SQLException e) {
+                markDown(replica, e);
+            } catch (RuntimeException e) {
+                markDown(replica, new SQLException(e));
+            }
+        }
+    }
+
+    private void markDown(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            log.warn("Réplica {} indisponible, lectures redirigées vers le primaire : {}", replica.name, cause.getMessage());
+        }
+        replica.healthy = false;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Optimiste au démarrage : le premier contrôle est fait dans start()
+        private volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package com.openclassrooms.mddapi.controllers;
 
+import com.openclassrooms.mddapi.config.Bulkheads;
 import com.openclassrooms.mddapi.dto.JwtResponse;
 import com.openclassrooms.mddapi.dto.LoginRequest;
 import com.openclassrooms.mddapi.dto.SignupRequest;
 import com.openclassrooms.mddapi.models.User;
 import com.openclassrooms.mddapi.repositories.UserRepository;
 import com.openclassrooms.mddapi.security.JwtTokenUtil;
+import com.openclassrooms.mddapi.security.LoginThrottle;
+import com.openclassrooms.mddapi.security.PasswordHashingRejectedException;
 import com.openclassrooms.mddapi.security.UserDetailsServiceImpl;
 import com.openclassrooms.mddapi.validation.PasswordValidator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -17,6 +22,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletRequest;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -38,46 +46,72 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private Bulkheads bulkheads;
+
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) throws Exception {
-        try {
-            // L'identifiant peut être un email ou un username
-            String identifier = loginRequest.getIdentifier();
-            authenticate(identifier, loginRequest.getPassword());
-            final UserDetails userDetails = userDetailsService.loadUserByUsername(identifier);
-            final String token = jwtTokenUtil.generateToken(userDetails);
-            return ResponseEntity.ok(new JwtResponse(token));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Identifiants incorrects");
+    public WebAsyncTask<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        // Rejet des appelants abusifs avant toute requête SQL et tout hachage, sans occuper la cloison
+        LoginThrottle.Result throttle = loginThrottle.tryAcquire(loginRequest.getIdentifier(), request.getRemoteAddr());
+        if (!throttle.isAllowed()) {
+            throw new LoginThrottledException(throttle.getRetryAfterSeconds());
         }
+
+        return bulkheads.auth().execute(() -> {
+            try {
+                // L'identifiant peut être un email ou un username
+                String identifier = loginRequest.getIdentifier();
+                authenticate(identifier, loginRequest.getPassword());
+                final UserDetails userDetails = userDetailsService.loadUserByUsername(identifier);
+                final String token = jwtTokenUtil.generateToken(userDetails);
+                return ResponseEntity.ok(new JwtResponse(token));
+            } catch (PasswordHashingRejectedException e) {
+                // Saturation : traitée par PasswordHashingExceptionHandler (503), pas un échec d'identifiants
+                throw e;
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body("Identifiants incorrects");
+            }
+        });
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<String> handleThrottled(LoginThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds))
+                .body("Trop de tentatives de connexion, veuillez réessayer plus tard");
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody SignupRequest signupRequest) {
-        // Validation du mot de passe
-        if (!PasswordValidator.isValid(signupRequest.getPassword())) {
-            return ResponseEntity.badRequest().body(PasswordValidator.getValidationMessage());
-        }
+    public WebAsyncTask<ResponseEntity<?>> register(@RequestBody SignupRequest signupRequest) {
+        return bulkheads.auth().execute(() -> {
+            // Validation du mot de passe
+            if (!PasswordValidator.isValid(signupRequest.getPassword())) {
+                return ResponseEntity.badRequest().body(PasswordValidator.getValidationMessage());
+            }
         
-        // Vérifie si l'email est déjà utilisé
-        if (userRepository.existsByEmail(signupRequest.getEmail())) {
-            return ResponseEntity.badRequest().body("Email déjà utilisé");
-        }
+            // Vérifie si l'email est déjà utilisé
+            if (userRepository.existsByEmail(signupRequest.getEmail())) {
+                return ResponseEntity.badRequest().body("Email déjà utilisé");
+            }
         
-        // Vérifie si le nom d'utilisateur est déjà utilisé
-        if (userRepository.existsByUsername(signupRequest.getUsername())) {
-            return ResponseEntity.badRequest().body("Nom d'utilisateur déjà utilisé");
-        }
+            // Vérifie si le nom d'utilisateur est déjà utilisé
+            if (userRepository.existsByUsername(signupRequest.getUsername())) {
+                return ResponseEntity.badRequest().body("Nom d'utilisateur déjà utilisé");
+            }
 
-        User user = new User();
-        user.setEmail(signupRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(signupRequest.getPassword()));
-        user.setUsername(signupRequest.getUsername());
-        // La bio n'est pas supportée dans notre schéma actuel
+            User user = new User();
+            user.setEmail(signupRequest.getEmail());
+            user.setPassword(passwordEncoder.encode(signupRequest.getPassword()));
+            user.setUsername(signupRequest.getUsername());
+            // La bio n'est pas supportée dans notre schéma actuel
 
-        userRepository.save(user);
+            userRepository.save(user);
 
-        return ResponseEntity.ok("Utilisateur enregistré avec succès");
+            return ResponseEntity.ok("Utilisateur enregistré avec succès");
+        });
     }
 
     private void authenticate(String username, String password) throws Exception {
@@ -89,4 +123,13 @@ public class AuthController {
             throw new Exception("IDENTIFIANTS_INVALIDES", e);
         }
     }
+
+    private static final class LoginThrottledException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        LoginThrottledException(long retryAfterSeconds) {
+            super(null, null, false, false);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
 }
@@ -1,110 +1,202 @@
 package com.openclassrooms.mddapi.controllers;
 
+import com.openclassrooms.mddapi.config.Bulkheads;
+import com.openclassrooms.mddapi.dto.CommentEvent;
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.dto.CursorPage;
+import com.openclassrooms.mddapi.dto.PostVersion;
 import com.openclassrooms.mddapi.models.Comment;
-import com.openclassrooms.mddapi.models.Post;
-import com.openclassrooms.mddapi.models.User;
 import com.openclassrooms.mddapi.repositories.CommentRepository;
 import com.openclassrooms.mddapi.repositories.PostRepository;
 import com.openclassrooms.mddapi.repositories.UserRepository;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.services.LiveEventHub;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/comments")
 @CrossOrigin(origins = "*")
 public class CommentController {
 
+    private static final int MAX_BATCH_POST_IDS = 50;
+    private static final int MAX_PER_POST = 20;
+
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final Bulkheads bulkheads;
+    private final TransactionTemplate transactionTemplate;
+    private final ThemeStatsService themeStatsService;
+    private final LiveEventHub liveEventHub;
 
     @Autowired
-    public CommentController(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository) {
+    public CommentController(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository,
+                             Bulkheads bulkheads, PlatformTransactionManager transactionManager,
+                             ThemeStatsService themeStatsService, LiveEventHub liveEventHub) {
         this.commentRepository = commentRepository;
         this.postRepository = postRepository;
         this.userRepository = userRepository;
+        this.bulkheads = bulkheads;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.themeStatsService = themeStatsService;
+        this.liveEventHub = liveEventHub;
+    }
+
+    /**
+     * Derniers commentaires de plusieurs articles, groupés par article, en un seul aller-retour.
+     */
+    @GetMapping
+    public WebAsyncTask<ResponseEntity<?>> getLatestCommentsByPosts(@RequestParam List<Long> postIds,
+                                                                    @RequestParam(defaultValue = "3") int perPost) {
+        return bulkheads.feedReads().execute(() -> {
+            Set<Long> ids = new LinkedHashSet<>(postIds);
+            if (ids.size() > MAX_BATCH_POST_IDS) {
+                return ResponseEntity.badRequest()
+                    .body("Au plus " + MAX_BATCH_POST_IDS + " articles par requête.");
+            }
+            int limit = Math.min(Math.max(perPost, 1), MAX_PER_POST);
+
+            Map<Long, List<Comment>> commentsByPost = new LinkedHashMap<>();
+            ids.forEach(id -> commentsByPost.put(id, new ArrayList<>()));
+            if (!ids.isEmpty()) {
+                for (Comment comment : commentRepository.findLatestByPostIds(ids, limit)) {
+                    // L'identifiant d'un proxy paresseux est lisible sans le charger
+                    commentsByPost.get(comment.getPost().getId()).add(comment);
+                }
+            }
+            return ResponseEntity.ok(commentsByPost);
+        });
     }
 
     @GetMapping("/post/{postId}")
-    public ResponseEntity<List<Comment>> getCommentsByPost(@PathVariable Long postId) {
-        Optional<Post> post = postRepository.findById(postId);
-        if (post.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        List<Comment> comments = commentRepository.findByPostOrderByCreatedAtDesc(post.get());
-        return ResponseEntity.ok(comments);
+    public WebAsyncTask<ResponseEntity<CursorPage<Comment>>> getCommentsByPost(@PathVariable Long postId,
+                                                                               @RequestParam(required = false) String cursor,
+                                                                               @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit,
+                                                                               WebRequest webRequest) {
+        return bulkheads.detailReads().execute(() -> {
+            // Empreinte des commentaires de l'article par agrégat, sans charger les entités
+            Optional<PostVersion> version = postRepository.findVersionById(postId);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            PostVersion v = version.get();
+            String etag = "\"c" + postId + "-" + v.getCommentCount() + "-" + v.getLastCommentId() + "-"
+                    + v.getCommentVersions() + "-" + pageLimit + "-" + (cursor != null ? cursor : "") + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            PageRequest fetch = PageRequest.of(0, pageLimit + 1);
+            List<Comment> rows = position == null
+                    ? commentRepository.findPageByPostId(postId, fetch)
+                    : commentRepository.findPageByPostIdBefore(postId, position.getCreatedAt(), position.getId(), fetch);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .body(CursorPage.of(rows, pageLimit, c -> new Cursor(c.getCreatedAt(), c.getId())));
+        });
     }
 
     @PostMapping("/post/{postId}")
-    public ResponseEntity<Comment> createComment(@PathVariable Long postId, @RequestBody Comment comment) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-        
-        Optional<User> user = userRepository.findByEmail(currentEmail);
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-        
-        Optional<Post> post = postRepository.findById(postId);
-        if (post.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Comment>> createComment(@PathVariable Long postId, @RequestBody Comment comment,
+                                                               @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
         
-        comment.setAuthor(user.get());
-        comment.setPost(post.get());
-        comment.setCreatedAt(LocalDateTime.now());
-        comment.setUpdatedAt(LocalDateTime.now());
-        
-        Comment savedComment = commentRepository.save(comment);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedComment);
+            // Insertion et compteur de l'article dans la même transaction ; l'incrément vérifie aussi l'existence
+            Comment savedComment = transactionTemplate.execute(status -> {
+                if (postRepository.incrementCommentCount(postId, 1) == 0) {
+                    return null;
+                }
+                // Références : seules les clés étrangères sont nécessaires pour l'insertion
+                comment.setAuthor(userRepository.getReferenceById(currentUserId));
+                comment.setPost(postRepository.getReferenceById(postId));
+                comment.setCreatedAt(LocalDateTime.now());
+                Comment saved = commentRepository.save(comment);
+                // Activité du thème de l'article : projection sur la clé primaire, sans charger l'article
+                postRepository.findThemeIdById(postId)
+                        .ifPresent(themeId -> themeStatsService.onCommentCreated(themeId, saved.getCreatedAt()));
+                return saved;
+            });
+            if (savedComment == null) {
+                return ResponseEntity.notFound().build();
+            }
+            liveEventHub.publishComment(new CommentEvent(savedComment.getId(), postId, savedComment.getContent(),
+                    currentUserId, savedComment.getCreatedAt()));
+            return ResponseEntity.status(HttpStatus.CREATED).body(savedComment);
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Comment> updateComment(@PathVariable Long id, @RequestBody Comment comment) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-        
-        Optional<Comment> existingComment = commentRepository.findById(id);
-        if (existingComment.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Comment>> updateComment(@PathVariable Long id, @RequestBody Comment comment,
+                                                               @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            Optional<Comment> existingComment = commentRepository.findById(id);
+            if (existingComment.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
         
-        if (!existingComment.get().getAuthor().getEmail().equals(currentEmail)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
+            if (!existingComment.get().getAuthor().getId().equals(currentUserId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
         
-        Comment commentToUpdate = existingComment.get();
-        commentToUpdate.setContent(comment.getContent());
-        commentToUpdate.setUpdatedAt(LocalDateTime.now());
+            Comment commentToUpdate = existingComment.get();
+            commentToUpdate.setContent(comment.getContent());
+            commentToUpdate.setUpdatedAt(LocalDateTime.now());
         
-        Comment updatedComment = commentRepository.save(commentToUpdate);
-        return ResponseEntity.ok(updatedComment);
+            Comment updatedComment = commentRepository.save(commentToUpdate);
+            return ResponseEntity.ok(updatedComment);
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteComment(@PathVariable Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-        
-        Optional<Comment> existingComment = commentRepository.findById(id);
-        if (existingComment.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Void>> deleteComment(@PathVariable Long id, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            Optional<Comment> existingComment = commentRepository.findById(id);
+            if (existingComment.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
         
-        if (!existingComment.get().getAuthor().getEmail().equals(currentEmail)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
+            if (!existingComment.get().getAuthor().getId().equals(currentUserId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
         
-        commentRepository.deleteById(id);
-        return ResponseEntity.noContent().build();
+            Long postId = existingComment.get().getPost().getId();
+            // Compteur décrémenté seulement par la requête qui a effectivement supprimé la ligne
+            boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (commentRepository.deleteByIdAndAuthorId(id, currentUserId) != 1) {
+                    return false;
+                }
+                postRepository.incrementCommentCount(postId, -1);
+                return true;
+            }));
+            if (!deleted) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.noContent().build();
+        });
     }
 }
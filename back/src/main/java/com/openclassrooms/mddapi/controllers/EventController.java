@@ -0,0 +1,70 @@
+package com.openclassrooms.mddapi.controllers;
+
+import com.openclassrooms.mddapi.dto.JwtResponse;
+import com.openclassrooms.mddapi.security.AuthenticatedUser;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.security.JwtTokenUtil;
+import com.openclassrooms.mddapi.services.LiveEventHub;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "*")
+public class EventController {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final LiveEventHub liveEventHub;
+    private final JwtTokenUtil jwtTokenUtil;
+    private final Duration tokenTtl;
+
+    @Autowired
+    public EventController(LiveEventHub liveEventHub, JwtTokenUtil jwtTokenUtil,
+                           @Value("${events.token-ttl:60s}") Duration tokenTtl) {
+        this.liveEventHub = liveEventHub;
+        this.jwtTokenUtil = jwtTokenUtil;
+        this.tokenTtl = tokenTtl;
+    }
+
+    /**
+     * Jeton court à passer en {@code ?token=} au flux, pour l'EventSource du navigateur qui ne sait pas envoyer
+     * l'en-tête {@code Authorization}. À redemander avant chaque reconnexion.
+     */
+    @PostMapping("/token")
+    public ResponseEntity<JwtResponse> token(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(new JwtResponse(jwtTokenUtil.generateEventsToken(principal, tokenTtl)));
+    }
+
+    /**
+     * Flux des nouveaux articles des thèmes suivis et, avec {@code postId}, des nouveaux commentaires de cet article.
+     * Authentifié par l'en-tête {@code Authorization} ou par un jeton de {@link #token} en paramètre.
+     * Hors cloisons : la connexion ne mobilise aucun thread entre deux événements.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) Long postId, @CurrentUser Long currentUserId) {
+        if (currentUserId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        SseEmitter emitter = liveEventHub.connect(currentUserId, postId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        // Pas de mise en tampon par un proxy nginx
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+}
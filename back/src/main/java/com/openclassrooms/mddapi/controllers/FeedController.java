@@ -0,0 +1,110 @@
+package com.openclassrooms.mddapi.controllers;
+
+import com.openclassrooms.mddapi.config.Bulkheads;
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.dto.CursorPage;
+import com.openclassrooms.mddapi.dto.PostSummary;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.services.TimelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/feed")
+@CrossOrigin(origins = "*")
+public class FeedController {
+
+    private final PostRepository postRepository;
+    private final TimelineService timelineService;
+    private final Bulkheads bulkheads;
+
+    @Autowired
+    public FeedController(PostRepository postRepository, TimelineService timelineService, Bulkheads bulkheads) {
+        this.postRepository = postRepository;
+        this.timelineService = timelineService;
+        this.bulkheads = bulkheads;
+    }
+
+    @GetMapping
+    public WebAsyncTask<ResponseEntity<CursorPage<PostSummary>>> getFeed(@RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit,
+                                                                         @RequestParam(defaultValue = "desc") String order,
+                                                                         @CurrentUser Long currentUserId) {
+        return bulkheads.feedReads().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            boolean ascending = "asc".equalsIgnoreCase(order);
+
+            // Mode fil matérialisé : seuls les articles de la page sont chargés
+            if (timelineService.isEnabled() && !ascending) {
+                List<PostSummary> rows = timelinePage(currentUserId, position, pageLimit + 1);
+                if (rows != null) {
+                    return ResponseEntity.ok(CursorPage.of(rows, pageLimit, FeedController::cursorOf));
+                }
+            }
+
+            // Positionnement après le curseur plutôt qu'OFFSET : la charge ne dépend pas de la profondeur de page
+            List<PostSummary> rows;
+            if (position == null) {
+                Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+                Sort sort = Sort.by(direction, "createdAt").and(Sort.by(direction, "id"));
+                rows = postRepository.findFeedByUserId(currentUserId, PageRequest.of(0, pageLimit + 1, sort));
+            } else if (ascending) {
+                rows = postRepository.findFeedByUserIdAfter(currentUserId, position.getCreatedAt(), position.getId(),
+                        PageRequest.of(0, pageLimit + 1));
+            } else {
+                rows = postRepository.findFeedByUserIdBefore(currentUserId, position.getCreatedAt(), position.getId(),
+                        PageRequest.of(0, pageLimit + 1));
+            }
+            return ResponseEntity.ok(CursorPage.of(rows, pageLimit, FeedController::cursorOf));
+        });
+    }
+
+    @PostMapping("/timeline/rebuild")
+    public WebAsyncTask<ResponseEntity<Void>> rebuildTimeline(@CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            timelineService.rebuild(currentUserId);
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    // Lignes lues depuis le fil matérialisé, ou null si la page le dépasse
+    private List<PostSummary> timelinePage(Long userId, Cursor position, int count) {
+        List<Long> ids = timelineService.getFeedPostIds(userId, position, count);
+        if (ids == null) {
+            return null;
+        }
+        List<PostSummary> summaries = postRepository.findSummariesInOrder(ids);
+        if (summaries.size() < ids.size()) {
+            // Articles supprimés pendant le chargement du fil : retirés du fil, puis page relue pour rester complète
+            Set<Long> missing = new HashSet<>(ids);
+            summaries.forEach(summary -> missing.remove(summary.getId()));
+            timelineService.forget(userId, missing);
+            ids = timelineService.getFeedPostIds(userId, position, count);
+            summaries = ids == null ? null : postRepository.findSummariesInOrder(ids);
+        }
+        return summaries;
+    }
+
+    private static Cursor cursorOf(PostSummary post) {
+        return new Cursor(post.getCreatedAt(), post.getId());
+    }
+}
@@ -1,19 +1,32 @@
 package com.openclassrooms.mddapi.controllers;
 
+import com.openclassrooms.mddapi.config.Bulkheads;
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.dto.CursorPage;
+import com.openclassrooms.mddapi.dto.PostSummary;
+import com.openclassrooms.mddapi.dto.PostVersion;
+import com.openclassrooms.mddapi.dto.SearchPage;
 import com.openclassrooms.mddapi.models.Post;
 import com.openclassrooms.mddapi.models.Theme;
-import com.openclassrooms.mddapi.models.User;
 import com.openclassrooms.mddapi.repositories.PostRepository;
-import com.openclassrooms.mddapi.repositories.ThemeRepository;
 import com.openclassrooms.mddapi.repositories.UserRepository;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.services.LiveEventHub;
+import com.openclassrooms.mddapi.services.PostSearchIndex;
+import com.openclassrooms.mddapi.services.ThemeCatalog;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
+import com.openclassrooms.mddapi.services.TimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,137 +35,240 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class PostController {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 50;
+
     private final PostRepository postRepository;
     private final UserRepository userRepository;
-    private final ThemeRepository themeRepository;
+    private final TimelineService timelineService;
+    private final ThemeCatalog themeCatalog;
+    private final PostSearchIndex postSearchIndex;
+    private final Bulkheads bulkheads;
+    private final ThemeStatsService themeStatsService;
+    private final LiveEventHub liveEventHub;
 
     @Autowired
-    public PostController(PostRepository postRepository, UserRepository userRepository, ThemeRepository themeRepository) {
+    public PostController(PostRepository postRepository, UserRepository userRepository,
+                          TimelineService timelineService, ThemeCatalog themeCatalog,
+                          PostSearchIndex postSearchIndex, Bulkheads bulkheads, ThemeStatsService themeStatsService,
+                          LiveEventHub liveEventHub) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
-        this.themeRepository = themeRepository;
+        this.timelineService = timelineService;
+        this.themeCatalog = themeCatalog;
+        this.postSearchIndex = postSearchIndex;
+        this.bulkheads = bulkheads;
+        this.themeStatsService = themeStatsService;
+        this.liveEventHub = liveEventHub;
     }
 
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts() {
-        List<Post> posts = postRepository.findAll();
-        return ResponseEntity.ok(posts);
+    public WebAsyncTask<ResponseEntity<CursorPage<PostSummary>>> getAllPosts(@RequestParam(required = false) String cursor,
+                                                                      @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        return bulkheads.feedReads().execute(() -> {
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            PageRequest fetch = PageRequest.of(0, pageLimit + 1);
+            List<PostSummary> rows = position == null
+                    ? postRepository.findPage(fetch)
+                    : postRepository.findPageBefore(position.getCreatedAt(), position.getId(), fetch);
+            return ResponseEntity.ok(CursorPage.of(rows, pageLimit, p -> new Cursor(p.getCreatedAt(), p.getId())));
+        });
+    }
+
+    @GetMapping("/search")
+    public WebAsyncTask<ResponseEntity<SearchPage<PostSummary>>> searchPosts(@RequestParam("q") String query,
+                                                                             @RequestParam(required = false) Long themeId,
+                                                                             @RequestParam(required = false) Long authorId,
+                                                                             @RequestParam(defaultValue = "0") int page,
+                                                                             @RequestParam(defaultValue = "20") int size) {
+        return bulkheads.feedReads().execute(() -> {
+            if (!postSearchIndex.isEnabled()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+
+            int pageNumber = Math.max(page, 0);
+            int pageSize = Math.min(Math.max(size, 1), MAX_SEARCH_PAGE_SIZE);
+            // Classement par pertinence : pas de curseur possible, la profondeur de pagination est bornée
+            if ((long) (pageNumber + 1) * pageSize > PostSearchIndex.MAX_RESULT_WINDOW) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            PostSearchIndex.Hits hits = postSearchIndex.search(query, themeId, authorId, pageNumber * pageSize, pageSize);
+            List<PostSummary> items = postRepository.findSummariesInOrder(hits.getPostIds());
+            return ResponseEntity.ok(new SearchPage<>(items, hits.getTotal(), pageNumber, pageSize,
+                    hits.getThemeFacets(), hits.getAuthorFacets()));
+        });
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Post> getPostById(@PathVariable Long id) {
-        Optional<Post> post = postRepository.findById(id);
-        return post.map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public WebAsyncTask<ResponseEntity<Post>> getPostById(@PathVariable Long id, WebRequest webRequest) {
+        return bulkheads.detailReads().execute(() -> {
+            // Empreinte calculée par agrégat : un 304 ne charge ni l'article ni ses commentaires
+            Optional<PostVersion> version = postRepository.findVersionById(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            PostVersion v = version.get();
+            String etag = "\"p" + id + "-" + v.getVersion() + "-" + v.getCommentCount() + "-"
+                    + v.getLastCommentId() + "-" + v.getCommentVersions() + "\"";
+            LocalDateTime lastModified = v.getLastCommentModified() != null && v.getLastCommentModified().isAfter(v.getLastModified())
+                    ? v.getLastCommentModified() : v.getLastModified();
+            if (webRequest.checkNotModified(etag, toEpochMilli(lastModified))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            Optional<Post> post = postRepository.findDetailById(id);
+            return post.map(p -> ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(p))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        });
     }
 
     @PostMapping
-    public ResponseEntity<?> createPost(@RequestBody Post post) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentUsername = authentication.getName();
-        
-        // Utiliser l'email comme identifiant dans notre système
-        Optional<User> user = userRepository.findByEmail(currentUsername);
-        if (user.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
-
-        post.setAuthor(user.get());
-        post.setCreatedAt(LocalDateTime.now());
-
-        // Gérer le thème par nom
-        if (post.getTheme() != null && post.getTheme().getName() != null && !post.getTheme().getName().trim().isEmpty()) {
-            String themeName = post.getTheme().getName().trim().toLowerCase();
+    public WebAsyncTask<ResponseEntity<?>> createPost(@RequestBody Post post, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            // Référence vers l'auteur : seule la clé étrangère est nécessaire pour l'insertion
+            post.setAuthor(userRepository.getReferenceById(currentUserId));
+            post.setCreatedAt(LocalDateTime.now());
+
+            // Gérer le thème par nom
+            if (post.getTheme() != null && post.getTheme().getName() != null && !post.getTheme().getName().trim().isEmpty()) {
+                String themeName = post.getTheme().getName().trim().toLowerCase();
             
-            // Chercher si le thème existe en base de données
-            Optional<Theme> existingTheme = themeRepository.findByName(themeName);
+                // Chercher si le thème existe dans le catalogue
+                Optional<Theme> existingTheme = themeCatalog.findByName(themeName);
             
-            if (existingTheme.isPresent()) {
-                // Utiliser le thème existant
-                post.setTheme(existingTheme.get());
+                if (existingTheme.isPresent()) {
+                    // Utiliser le thème existant
+                    post.setTheme(existingTheme.get());
+                } else {
+                    // Le thème n'existe pas en base de données
+                    return ResponseEntity.badRequest()
+                        .body("Thème incorrect. Le thème '" + themeName + "' n'existe pas.");
+                }
             } else {
-                // Le thème n'existe pas en base de données
                 return ResponseEntity.badRequest()
-                    .body("Thème incorrect. Le thème '" + themeName + "' n'existe pas.");
+                    .body("Un thème doit être sélectionné.");
             }
-        } else {
-            return ResponseEntity.badRequest()
-                .body("Un thème doit être sélectionné.");
-        }
 
-        Post savedPost = postRepository.save(post);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedPost);
+            Post savedPost = postRepository.save(post);
+            timelineService.onPostCreated(savedPost);
+            postSearchIndex.index(savedPost);
+            themeStatsService.onPostCreated(savedPost);
+            // Auteur référencé sans être chargé : nom lu par projection pour l'événement
+            liveEventHub.publishPost(toSummary(savedPost, userRepository.findUsernameById(currentUserId).orElse(null)));
+            return ResponseEntity.status(HttpStatus.CREATED).body(savedPost);
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Post> updatePost(@PathVariable Long id, @RequestBody Post post) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-
-        Optional<Post> existingPost = postRepository.findById(id);
-        if (existingPost.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-
-        // Vérifier que l'utilisateur actuel est bien l'auteur
-        if (!existingPost.get().getAuthor().getEmail().equals(currentEmail)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
-
-        Post postToUpdate = existingPost.get();
-        postToUpdate.setTitle(post.getTitle());
-        postToUpdate.setContent(post.getContent());
+    public WebAsyncTask<ResponseEntity<Post>> updatePost(@PathVariable Long id, @RequestBody Post post, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            Optional<Post> existingPost = postRepository.findById(id);
+            if (existingPost.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            // Vérifier que l'utilisateur actuel est bien l'auteur
+            if (!existingPost.get().getAuthor().getId().equals(currentUserId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+
+            Post postToUpdate = existingPost.get();
+            Long previousThemeId = postToUpdate.getTheme() != null ? postToUpdate.getTheme().getId() : null;
+            postToUpdate.setTitle(post.getTitle());
+            postToUpdate.setContent(post.getContent());
         
-        // Gérer le thème unique dans notre modèle
-        if (post.getThemes() != null && !post.getThemes().isEmpty()) {
-            Theme theme = post.getThemes().iterator().next();
-            Optional<Theme> validTheme = themeRepository.findById(theme.getId());
-            if (validTheme.isPresent()) {
-                postToUpdate.setTheme(validTheme.get());
+            // Gérer le thème unique dans notre modèle
+            if (post.getThemes() != null && !post.getThemes().isEmpty()) {
+                Theme theme = post.getThemes().iterator().next();
+                Optional<Theme> validTheme = themeCatalog.findById(theme.getId());
+                if (validTheme.isPresent()) {
+                    postToUpdate.setTheme(validTheme.get());
+                }
             }
-        }
 
-        Post updatedPost = postRepository.save(postToUpdate);
-        return ResponseEntity.ok(updatedPost);
+            Post updatedPost = postRepository.save(postToUpdate);
+            Long themeId = updatedPost.getTheme() != null ? updatedPost.getTheme().getId() : null;
+            postSearchIndex.index(updatedPost);
+            themeStatsService.onPostMoved(previousThemeId, themeId, updatedPost.getCreatedAt());
+            timelineService.onPostMoved(id, previousThemeId, themeId, updatedPost.getCreatedAt());
+            return ResponseEntity.ok(updatedPost);
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deletePost(@PathVariable Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-
-        Optional<Post> existingPost = postRepository.findById(id);
-        if (existingPost.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Void>> deletePost(@PathVariable Long id, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            Optional<Post> existingPost = postRepository.findById(id);
+            if (existingPost.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
 
-        if (!existingPost.get().getAuthor().getEmail().equals(currentEmail)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
+            if (!existingPost.get().getAuthor().getId().equals(currentUserId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
 
-        postRepository.deleteById(id);
-        return ResponseEntity.noContent().build();
+            postRepository.deleteById(id);
+            postSearchIndex.remove(id);
+            themeStatsService.onPostDeleted(existingPost.get());
+            Theme theme = existingPost.get().getTheme();
+            timelineService.onPostDeleted(id, theme != null ? theme.getId() : null);
+            return ResponseEntity.noContent().build();
+        });
     }
 
     @GetMapping("/theme/{themeId}")
-    public ResponseEntity<List<Post>> getPostsByTheme(@PathVariable Long themeId) {
-        Optional<Theme> theme = themeRepository.findById(themeId);
-        if (theme.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        List<Post> posts = postRepository.findByTheme(theme.get());
-        return ResponseEntity.ok(posts);
+    public WebAsyncTask<ResponseEntity<CursorPage<PostSummary>>> getPostsByTheme(@PathVariable Long themeId,
+                                                                          @RequestParam(required = false) String cursor,
+                                                                          @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        return bulkheads.feedReads().execute(() -> {
+            if (themeCatalog.findById(themeId).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            PageRequest fetch = PageRequest.of(0, pageLimit + 1);
+            List<PostSummary> rows = position == null
+                    ? postRepository.findPageByThemeId(themeId, fetch)
+                    : postRepository.findPageByThemeIdBefore(themeId, position.getCreatedAt(), position.getId(), fetch);
+            return ResponseEntity.ok(CursorPage.of(rows, pageLimit, p -> new Cursor(p.getCreatedAt(), p.getId())));
+        });
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Post>> getPostsByUser(@PathVariable Long userId) {
-        Optional<User> user = userRepository.findById(userId);
-        if (user.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        List<Post> posts = postRepository.findByAuthorOrderByCreatedAtDesc(user.get());
-        return ResponseEntity.ok(posts);
+    public WebAsyncTask<ResponseEntity<CursorPage<PostSummary>>> getPostsByUser(@PathVariable Long userId,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        return bulkheads.feedReads().execute(() -> {
+            if (!userRepository.existsById(userId)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            PageRequest fetch = PageRequest.of(0, pageLimit + 1);
+            List<PostSummary> rows = position == null
+                    ? postRepository.findPageByAuthorId(userId, fetch)
+                    : postRepository.findPageByAuthorIdBefore(userId, position.getCreatedAt(), position.getId(), fetch);
+            return ResponseEntity.ok(CursorPage.of(rows, pageLimit, p -> new Cursor(p.getCreatedAt(), p.getId())));
+        });
+    }
+
+    // Auteur référencé par son identifiant seul : le proxy n'est pas initialisé
+    private static PostSummary toSummary(Post post, String authorUsername) {
+        String content = post.getContent();
+        String excerpt = content != null && content.length() > PostSummary.EXCERPT_LENGTH
+                ? content.substring(0, PostSummary.EXCERPT_LENGTH) : content;
+        return new PostSummary(post.getId(), post.getTitle(), excerpt, post.getCreatedAt(),
+                post.getAuthor().getId(), authorUsername, post.getTheme().getId(), post.getTheme().getName(), 0L);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime == null ? -1 : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
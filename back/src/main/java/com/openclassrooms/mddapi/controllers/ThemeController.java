@@ -1,139 +1,279 @@
 package com.openclassrooms.mddapi.controllers;
 
+import com.openclassrooms.mddapi.config.Bulkheads;
+import com.openclassrooms.mddapi.dto.ThemeStats;
 import com.openclassrooms.mddapi.models.Theme;
-import com.openclassrooms.mddapi.models.User;
 import com.openclassrooms.mddapi.repositories.ThemeRepository;
 import com.openclassrooms.mddapi.repositories.UserRepository;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.services.DataExportService;
+import com.openclassrooms.mddapi.services.LiveEventHub;
+import com.openclassrooms.mddapi.services.SubscriptionIndex;
+import com.openclassrooms.mddapi.services.ThemeCatalog;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
+import com.openclassrooms.mddapi.services.TimelineService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/themes")
 @CrossOrigin(origins = "*")
 public class ThemeController {
 
+    private static final int MAX_TRENDING = 50;
+
     private final ThemeRepository themeRepository;
     private final UserRepository userRepository;
+    private final TimelineService timelineService;
+    private final ThemeCatalog themeCatalog;
+    private final Bulkheads bulkheads;
+    private final DataExportService dataExportService;
+    private final TransactionTemplate transactionTemplate;
+    private final SubscriptionIndex subscriptionIndex;
+    private final ThemeStatsService themeStatsService;
+    private final LiveEventHub liveEventHub;
 
     @Autowired
-    public ThemeController(ThemeRepository themeRepository, UserRepository userRepository) {
+    public ThemeController(ThemeRepository themeRepository, UserRepository userRepository, TimelineService timelineService,
+                           ThemeCatalog themeCatalog, Bulkheads bulkheads, DataExportService dataExportService,
+                           PlatformTransactionManager transactionManager, SubscriptionIndex subscriptionIndex,
+                           ThemeStatsService themeStatsService, LiveEventHub liveEventHub) {
         this.themeRepository = themeRepository;
         this.userRepository = userRepository;
+        this.timelineService = timelineService;
+        this.themeCatalog = themeCatalog;
+        this.bulkheads = bulkheads;
+        this.dataExportService = dataExportService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.subscriptionIndex = subscriptionIndex;
+        this.themeStatsService = themeStatsService;
+        this.liveEventHub = liveEventHub;
     }
 
     @GetMapping
-    public ResponseEntity<List<Theme>> getAllThemes() {
-        List<Theme> themes = themeRepository.findAll();
-        return ResponseEntity.ok(themes);
+    public ResponseEntity<List<Theme>> getAllThemes(WebRequest webRequest) {
+        // L'ETag est lu avant la liste : au pire il est plus ancien que le contenu, jamais plus récent
+        if (webRequest.checkNotModified(themeCatalog.listEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        List<Theme> themes = themeCatalog.findAll();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(themes);
+    }
+
+    // Statistiques servies depuis les compteurs en mémoire, sans accès base
+    @GetMapping("/stats")
+    public ResponseEntity<List<ThemeStats>> getThemeStats() {
+        return ResponseEntity.ok(themeStatsService.getStats());
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<List<ThemeStats>> getTrendingThemes(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(themeStatsService.getTrending(Math.min(Math.max(limit, 1), MAX_TRENDING)));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Theme> getThemeById(@PathVariable Long id) {
-        Optional<Theme> theme = themeRepository.findById(id);
-        return theme.map(ResponseEntity::ok)
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<Theme> getThemeById(@PathVariable Long id, WebRequest webRequest) {
+        Optional<Theme> theme = themeCatalog.findById(id);
+        if (theme.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified("\"t" + id + "-" + theme.get().getVersion() + "\"")) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(theme.get());
+    }
+
+    /**
+     * Export NDJSON du thème, de ses articles et de leurs commentaires, écrit au fil de la lecture.
+     */
+    @GetMapping(value = "/{id}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<ResponseEntity<Void>> exportTheme(@PathVariable Long id, HttpServletResponse response) {
+        return bulkheads.exports().execute(() -> {
+            Optional<Theme> theme = themeCatalog.findById(id);
+            if (theme.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"theme-" + id + ".ndjson\"");
+            try {
+                dataExportService.exportTheme(theme.get(), response.getOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Corps déjà écrit dans la réponse
+            return null;
+        });
     }
 
     @PostMapping
-    public ResponseEntity<Theme> createTheme(@RequestBody Theme theme) {
-        if (themeRepository.existsByName(theme.getName())) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
+    public WebAsyncTask<ResponseEntity<Theme>> createTheme(@RequestBody Theme theme) {
+        return bulkheads.writes().execute(() -> {
+            if (themeCatalog.findByName(theme.getName()).isPresent()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
         
-        Theme savedTheme = themeRepository.save(theme);
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedTheme);
+            Theme savedTheme = themeRepository.save(theme);
+            themeCatalog.put(savedTheme);
+            return ResponseEntity.status(HttpStatus.CREATED).body(savedTheme);
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Theme> updateTheme(@PathVariable Long id, @RequestBody Theme theme) {
-        if (!themeRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Theme>> updateTheme(@PathVariable Long id, @RequestBody Theme theme) {
+        return bulkheads.writes().execute(() -> {
+            Optional<Theme> existingTheme = themeRepository.findById(id);
+            if (existingTheme.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
         
-        // Vérifier si le nouveau nom n'est pas déjà utilisé par un autre thème
-        Optional<Theme> existingThemeWithName = themeRepository.findByName(theme.getName());
-        if (existingThemeWithName.isPresent() && !existingThemeWithName.get().getId().equals(id)) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
+            // Vérifier si le nouveau nom n'est pas déjà utilisé par un autre thème
+            Optional<Theme> existingThemeWithName = themeCatalog.findByName(theme.getName());
+            if (existingThemeWithName.isPresent() && !existingThemeWithName.get().getId().equals(id)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
         
-        theme.setId(id);
-        Theme updatedTheme = themeRepository.save(theme);
-        return ResponseEntity.ok(updatedTheme);
+            // Mise à jour de l'entité chargée pour que sa version soit incrémentée
+            Theme themeToUpdate = existingTheme.get();
+            themeToUpdate.setName(theme.getName());
+            themeToUpdate.setDescription(theme.getDescription());
+            Theme updatedTheme = themeRepository.save(themeToUpdate);
+            themeCatalog.put(updatedTheme);
+            return ResponseEntity.ok(updatedTheme);
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteTheme(@PathVariable Long id) {
-        if (!themeRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
-        }
+    public WebAsyncTask<ResponseEntity<Void>> deleteTheme(@PathVariable Long id) {
+        return bulkheads.writes().execute(() -> {
+            if (themeCatalog.findById(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
         
-        themeRepository.deleteById(id);
-        return ResponseEntity.noContent().build();
+            themeRepository.deleteById(id);
+            themeCatalog.remove(id);
+            subscriptionIndex.removeTheme(id);
+            themeStatsService.onThemeDeleted(id);
+            return ResponseEntity.noContent().build();
+        });
     }
 
     @PostMapping("/{id}/subscribe")
-    public ResponseEntity<Void> subscribeToTheme(@PathVariable Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        Optional<Theme> themeOpt = themeRepository.findById(id);
-
-        if (userOpt.isPresent() && themeOpt.isPresent()) {
-            User user = userOpt.get();
-            Theme theme = themeOpt.get();
-
-            if (!user.getFollowedThemes().contains(theme)) {
-                user.getFollowedThemes().add(theme);
-                userRepository.save(user);
+    public WebAsyncTask<ResponseEntity<Void>> subscribeToTheme(@PathVariable Long id, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
             }
 
+            // Thème vérifié en mémoire : INSERT IGNORE ignorerait aussi une clé étrangère invalide
+            if (themeCatalog.findById(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (userRepository.subscribe(currentUserId, id) > 0) {
+                subscriptionIndex.refreshUser(currentUserId);
+                timelineService.invalidate(currentUserId);
+                liveEventHub.refreshSubscriptions(currentUserId);
+            }
             return ResponseEntity.ok().build();
-        }
-
-        return ResponseEntity.notFound().build();
+        });
     }
 
     @DeleteMapping("/{id}/unsubscribe")
-    public ResponseEntity<Void> unsubscribeFromTheme(@PathVariable Long id) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        Optional<Theme> themeOpt = themeRepository.findById(id);
+    public WebAsyncTask<ResponseEntity<Void>> unsubscribeFromTheme(@PathVariable Long id, @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
 
-        if (userOpt.isPresent() && themeOpt.isPresent()) {
-            User user = userOpt.get();
-            Theme theme = themeOpt.get();
+            if (themeCatalog.findById(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (userRepository.unsubscribe(currentUserId, id) > 0) {
+                subscriptionIndex.refreshUser(currentUserId);
+                timelineService.invalidate(currentUserId);
+                liveEventHub.refreshSubscriptions(currentUserId);
+            }
+            return ResponseEntity.ok().build();
+        });
+    }
 
-            user.getFollowedThemes().remove(theme);
-            userRepository.save(user);
+    /**
+     * Remplace les abonnements de l'utilisateur par l'ensemble fourni : seules les différences sont écrites,
+     * en une transaction.
+     */
+    @PutMapping("/subscriptions")
+    public WebAsyncTask<ResponseEntity<?>> replaceSubscriptions(@RequestBody Set<Long> themeIds,
+                                                                @CurrentUser Long currentUserId) {
+        return bulkheads.writes().execute(() -> {
+            if (currentUserId == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
 
-            return ResponseEntity.ok().build();
-        }
+            List<Theme> themes = new ArrayList<>();
+            List<Long> unknown = new ArrayList<>();
+            for (Long themeId : themeIds) {
+                Optional<Theme> theme = themeCatalog.findById(themeId);
+                if (theme.isPresent()) {
+                    themes.add(theme.get());
+                } else {
+                    unknown.add(themeId);
+                }
+            }
+            if (!unknown.isEmpty()) {
+                return ResponseEntity.badRequest().body("Thèmes inconnus : " + unknown);
+            }
 
-        return ResponseEntity.notFound().build();
+            boolean changed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                Set<Long> current = new HashSet<>(userRepository.findFollowedThemeIdsByUserId(currentUserId));
+                Set<Long> added = new HashSet<>(themeIds);
+                added.removeAll(current);
+                Set<Long> removed = new HashSet<>(current);
+                removed.removeAll(themeIds);
+                if (!added.isEmpty()) {
+                    userRepository.subscribeAll(currentUserId, added);
+                }
+                if (!removed.isEmpty()) {
+                    userRepository.unsubscribeAll(currentUserId, removed);
+                }
+                return !added.isEmpty() || !removed.isEmpty();
+            }));
+            if (changed) {
+                subscriptionIndex.refreshUser(currentUserId);
+                timelineService.invalidate(currentUserId);
+                liveEventHub.refreshSubscriptions(currentUserId);
+            }
+            return ResponseEntity.ok(themes);
+        });
     }
 
+    // Servi depuis l'index des abonnements et le catalogue, sans accès base
     @GetMapping("/subscriptions")
-    public ResponseEntity<List<Theme>> getUserSubscriptions() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        Optional<User> userOpt = userRepository.findByEmail(email);
-
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            List<Theme> subscribedThemes = user.getFollowedThemes().stream()
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(subscribedThemes);
+    public ResponseEntity<List<Theme>> getUserSubscriptions(@CurrentUser Long currentUserId) {
+        if (currentUserId == null) {
+            return ResponseEntity.notFound().build();
         }
 
-        return ResponseEntity.notFound().build();
+        List<Theme> subscribedThemes = new ArrayList<>();
+        for (Long themeId : subscriptionIndex.getFollowedThemeIds(currentUserId)) {
+            themeCatalog.findById(themeId).ifPresent(subscribedThemes::add);
+        }
+        return ResponseEntity.ok(subscribedThemes);
     }
 }
@@ -1,19 +1,42 @@
 package com.openclassrooms.mddapi.controllers;
 
+import com.openclassrooms.mddapi.config.Bulkheads;
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.dto.CursorPage;
 import com.openclassrooms.mddapi.dto.UserDto;
 import com.openclassrooms.mddapi.models.User;
+import com.openclassrooms.mddapi.repositories.PostRepository;
 import com.openclassrooms.mddapi.repositories.UserRepository;
+import com.openclassrooms.mddapi.security.AuthenticatedUser;
+import com.openclassrooms.mddapi.security.CurrentUser;
+import com.openclassrooms.mddapi.security.PrincipalCache;
+import com.openclassrooms.mddapi.services.DataExportService;
+import com.openclassrooms.mddapi.services.PostSearchIndex;
+import com.openclassrooms.mddapi.services.SubscriptionIndex;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
+import com.openclassrooms.mddapi.services.TimelineService;
 import com.openclassrooms.mddapi.validation.PasswordValidator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -23,118 +46,204 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
+    private final Bulkheads bulkheads;
+    private final PostRepository postRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DataExportService dataExportService;
+    private final SubscriptionIndex subscriptionIndex;
+    private final TimelineService timelineService;
+    private final PostSearchIndex postSearchIndex;
+    private final ThemeStatsService themeStatsService;
 
     @Autowired
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder, PrincipalCache principalCache,
+                          Bulkheads bulkheads, PostRepository postRepository, PlatformTransactionManager transactionManager,
+                          DataExportService dataExportService, SubscriptionIndex subscriptionIndex,
+                          TimelineService timelineService, PostSearchIndex postSearchIndex,
+                          ThemeStatsService themeStatsService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.principalCache = principalCache;
+        this.bulkheads = bulkheads;
+        this.postRepository = postRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dataExportService = dataExportService;
+        this.subscriptionIndex = subscriptionIndex;
+        this.timelineService = timelineService;
+        this.postSearchIndex = postSearchIndex;
+        this.themeStatsService = themeStatsService;
     }
 
     @GetMapping
-    public ResponseEntity<List<UserDto>> getAllUsers() {
-        List<UserDto> users = userRepository.findAll().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(users);
+    public WebAsyncTask<ResponseEntity<CursorPage<UserDto>>> getAllUsers(@RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "" + CursorPage.DEFAULT_LIMIT) int limit) {
+        return bulkheads.feedReads().execute(() -> {
+            Cursor position = Cursor.decode(cursor);
+            int pageLimit = CursorPage.clampLimit(limit);
+            PageRequest fetch = PageRequest.of(0, pageLimit + 1);
+            List<User> rows = position == null
+                    ? userRepository.findPage(fetch)
+                    : userRepository.findPageBefore(position.getCreatedAt(), position.getId(), fetch);
+            CursorPage<UserDto> page = CursorPage.of(rows, pageLimit, u -> new Cursor(u.getCreatedAt(), u.getId()))
+                    .map(UserController::convertToDto);
+            return ResponseEntity.ok(page);
+        });
     }
 
     @GetMapping("/me")
-    public ResponseEntity<UserDto> getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        Optional<User> user = userRepository.findByEmail(email);
-        return user.map(value -> ResponseEntity.ok(convertToDto(value)))
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public WebAsyncTask<ResponseEntity<UserDto>> getCurrentUser(@CurrentUser Long currentUserId) {
+        return bulkheads.detailReads().execute(() -> {
+            Optional<User> user = userRepository.findById(currentUserId);
+            return user.map(value -> ResponseEntity.ok(convertToDto(value)))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        });
+    }
+
+    /**
+     * Export NDJSON de toutes les données de l'utilisateur connecté, écrit au fil de la lecture.
+     */
+    @GetMapping(value = "/me/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<ResponseEntity<Void>> exportCurrentUser(@CurrentUser Long currentUserId, HttpServletResponse response) {
+        return bulkheads.exports().execute(() -> {
+            Optional<User> user = userRepository.findById(currentUserId);
+            if (user.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"user-" + currentUserId + ".ndjson\"");
+            try {
+                dataExportService.exportUser(user.get(), response.getOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Corps déjà écrit dans la réponse
+            return null;
+        });
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<UserDto> getUserById(@PathVariable Long id) {
-        Optional<User> user = userRepository.findById(id);
-        return user.map(value -> ResponseEntity.ok(convertToDto(value)))
-                .orElseGet(() -> ResponseEntity.notFound().build());
+    public WebAsyncTask<ResponseEntity<UserDto>> getUserById(@PathVariable Long id) {
+        return bulkheads.detailReads().execute(() -> {
+            Optional<User> user = userRepository.findById(id);
+            return user.map(value -> ResponseEntity.ok(convertToDto(value)))
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        });
     }
 
     @PostMapping
-    public ResponseEntity<UserDto> createUser(@RequestBody User user) {
-        if (userRepository.existsByUsername(user.getUsername())) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
-        if (userRepository.existsByEmail(user.getEmail())) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
-        User savedUser = userRepository.save(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(convertToDto(savedUser));
+    public WebAsyncTask<ResponseEntity<UserDto>> createUser(@RequestBody User user) {
+        return bulkheads.writes().execute(() -> {
+            if (userRepository.existsByUsername(user.getUsername())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            if (userRepository.existsByEmail(user.getEmail())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            User savedUser = userRepository.save(user);
+            return ResponseEntity.status(HttpStatus.CREATED).body(convertToDto(savedUser));
+        });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<UserDto> updateUser(@PathVariable Long id, @RequestBody User user) {
-        if (!userRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
-        }
-        user.setId(id);
-        User updatedUser = userRepository.save(user);
-        return ResponseEntity.ok(convertToDto(updatedUser));
+    public WebAsyncTask<ResponseEntity<UserDto>> updateUser(@PathVariable Long id, @RequestBody User user) {
+        return bulkheads.writes().execute(() -> {
+            Optional<User> existingUser = userRepository.findById(id);
+            if (existingUser.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            user.setId(id);
+            User updatedUser = userRepository.save(user);
+            principalCache.invalidateUser(existingUser.get().getEmail());
+            return ResponseEntity.ok(convertToDto(updatedUser));
+        });
     }
 
     @PutMapping("/me")
-    public ResponseEntity<?> updateCurrentUser(@RequestBody User userUpdate) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String currentEmail = authentication.getName();
-        Optional<User> userOpt = userRepository.findByEmail(currentEmail);
+    public WebAsyncTask<ResponseEntity<?>> updateCurrentUser(@RequestBody User userUpdate, @CurrentUser AuthenticatedUser currentUser) {
+        return bulkheads.writes().execute(() -> {
+            String currentEmail = currentUser.getUsername();
+            Optional<User> userOpt = userRepository.findById(currentUser.getId());
         
-        if (userOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
         
-        User existingUser = userOpt.get();
+            User existingUser = userOpt.get();
         
-        // Mise à jour du username avec vérification d'unicité
-        if (userUpdate.getUsername() != null && !userUpdate.getUsername().trim().isEmpty()) {
-            if (!userUpdate.getUsername().equals(existingUser.getUsername())) {
-                if (userRepository.existsByUsername(userUpdate.getUsername())) {
-                    return ResponseEntity.status(HttpStatus.CONFLICT).body("Username déjà utilisé");
+            // Mise à jour du username avec vérification d'unicité
+            if (userUpdate.getUsername() != null && !userUpdate.getUsername().trim().isEmpty()) {
+                if (!userUpdate.getUsername().equals(existingUser.getUsername())) {
+                    if (userRepository.existsByUsername(userUpdate.getUsername())) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body("Username déjà utilisé");
+                    }
+                    existingUser.setUsername(userUpdate.getUsername());
                 }
-                existingUser.setUsername(userUpdate.getUsername());
             }
-        }
         
-        // Mise à jour de l'email avec vérification d'unicité
-        if (userUpdate.getEmail() != null && !userUpdate.getEmail().trim().isEmpty()) {
-            if (!userUpdate.getEmail().equals(existingUser.getEmail())) {
-                if (userRepository.existsByEmail(userUpdate.getEmail())) {
-                    return ResponseEntity.status(HttpStatus.CONFLICT).body("Email déjà utilisé");
+            // Mise à jour de l'email avec vérification d'unicité
+            if (userUpdate.getEmail() != null && !userUpdate.getEmail().trim().isEmpty()) {
+                if (!userUpdate.getEmail().equals(existingUser.getEmail())) {
+                    if (userRepository.existsByEmail(userUpdate.getEmail())) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body("Email déjà utilisé");
+                    }
+                    existingUser.setEmail(userUpdate.getEmail());
                 }
-                existingUser.setEmail(userUpdate.getEmail());
             }
-        }
         
-        // Mise à jour du mot de passe avec validation forte et cryptage
-        if (userUpdate.getPassword() != null && !userUpdate.getPassword().trim().isEmpty()) {
-            if (!PasswordValidator.isValid(userUpdate.getPassword())) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body("Le mot de passe doit contenir au moins 8 caractères, une majuscule, une minuscule, un chiffre et un caractère spécial");
+            // Mise à jour du mot de passe avec validation forte et cryptage
+            if (userUpdate.getPassword() != null && !userUpdate.getPassword().trim().isEmpty()) {
+                if (!PasswordValidator.isValid(userUpdate.getPassword())) {
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Le mot de passe doit contenir au moins 8 caractères, une majuscule, une minuscule, un chiffre et un caractère spécial");
+                }
+                existingUser.setPassword(passwordEncoder.encode(userUpdate.getPassword()));
             }
-            existingUser.setPassword(passwordEncoder.encode(userUpdate.getPassword()));
-        }
         
-        try {
-            User updatedUser = userRepository.save(existingUser);
-            return ResponseEntity.ok(convertToDto(updatedUser));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur lors de la mise à jour");
-        }
+            try {
+                User updatedUser = userRepository.save(existingUser);
+                // Les jetons émis pour l'ancien email ne doivent plus être servis depuis le cache
+                principalCache.invalidateUser(currentEmail);
+                return ResponseEntity.ok(convertToDto(updatedUser));
+            } catch (Exception e) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur lors de la mise à jour");
+            }
+        });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        if (!userRepository.existsById(id)) {
-            return ResponseEntity.notFound().build();
-        }
-        userRepository.deleteById(id);
-        return ResponseEntity.noContent().build();
+    public WebAsyncTask<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
+        return bulkheads.writes().execute(() -> {
+            Optional<User> user = userRepository.findById(id);
+            if (user.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            // Ses commentaires et ses articles partent avec le compte : les compteurs des articles concernés suivent
+            List<Object[]> posts = transactionTemplate.execute(status -> {
+                List<Object[]> entries = postRepository.findEntriesByAuthorId(id);
+                postRepository.decrementCommentCountsByAuthorId(id);
+                userRepository.deleteById(id);
+                return entries;
+            });
+            principalCache.invalidateUser(user.get().getEmail());
+            subscriptionIndex.removeUser(id);
+            List<Long> postIds = new ArrayList<>(posts.size());
+            Set<Long> themeIds = new HashSet<>();
+            for (Object[] post : posts) {
+                postIds.add((Long) post[0]);
+                if (post[1] != null) {
+                    themeIds.add((Long) post[1]);
+                }
+                themeStatsService.onPostDeleted((Long) post[1], (LocalDateTime) post[2]);
+            }
+            postSearchIndex.removeAll(postIds);
+            timelineService.invalidateFollowers(themeIds);
+            return ResponseEntity.noContent().build();
+        });
     }
 
-    private UserDto convertToDto(User user) {
+    // Sans état et visible dans le paquet : mesurée par les benchmarks JMH (module benchmarks)
+    static UserDto convertToDto(User user) {
         UserDto dto = new UserDto();
         dto.setId(user.getId());
         dto.setUsername(user.getUsername());
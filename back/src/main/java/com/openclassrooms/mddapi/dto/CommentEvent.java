@@ -0,0 +1,42 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nouveau commentaire poussé aux lecteurs de l'article (flux d'événements).
+ */
+public class CommentEvent {
+    private final Long id;
+    private final Long postId;
+    private final String content;
+    private final Long authorId;
+    private final LocalDateTime createdAt;
+
+    public CommentEvent(Long id, Long postId, String content, Long authorId, LocalDateTime createdAt) {
+        this.id = id;
+        this.postId = postId;
+        this.content = content;
+        this.authorId = authorId;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
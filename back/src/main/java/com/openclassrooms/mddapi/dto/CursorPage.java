@@ -0,0 +1,56 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Page d'une liste paginée par curseur : {@code next} vaut {@code null} sur la dernière page.
+ */
+public class CursorPage<T> {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private final List<T> items;
+    private final String next;
+    private final int limit;
+
+    public CursorPage(List<T> items, String next, int limit) {
+        this.items = items;
+        this.next = next;
+        this.limit = limit;
+    }
+
+    /**
+     * Construit la page à partir de {@code limit + 1} lignes lues : la ligne surnuméraire
+     * indique seulement qu'une page suivante existe.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Cursor> keyExtractor) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null, limit);
+        }
+        List<T> items = rows.subList(0, limit);
+        String next = keyExtractor.apply(items.get(limit - 1)).encode();
+        return new CursorPage<>(items, next, limit);
+    }
+
+    public static int clampLimit(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_LIMIT);
+    }
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).collect(Collectors.toList()), next, limit);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bilan d'un import en masse : lignes insérées, ignorées, erreurs et débit.
+ */
+public class ImportReport {
+    public static final int MAX_ERRORS = 100;
+
+    private long posts;
+    private long comments;
+    private long ignored;
+    private long rejected;
+    private final List<String> errors = new ArrayList<>();
+    private long durationMillis;
+
+    public void addPost() {
+        posts++;
+    }
+
+    public void addComments(long count) {
+        comments += count;
+    }
+
+    public void addIgnored() {
+        ignored++;
+    }
+
+    // Seules les premières erreurs sont détaillées
+    public void reject(String error) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getPosts() {
+        return posts;
+    }
+
+    public long getComments() {
+        return comments;
+    }
+
+    public long getIgnored() {
+        return ignored;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return durationMillis == 0 ? 0 : (posts + comments) * 1000 / durationMillis;
+    }
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.mddapi.dto;
+
+/**
+ * Champs d'un article nécessaires à l'index de recherche, lus sans charger l'entité.
+ */
+public interface PostDocument {
+    Long getId();
+
+    String getTitle();
+
+    String getContent();
+
+    Long getThemeId();
+
+    Long getAuthorId();
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vue allégée d'un article pour les listes : pas de contenu complet ni de commentaires.
+ */
+public class PostSummary {
+    public static final int EXCERPT_LENGTH = 200;
+
+    private final Long id;
+    private final String title;
+    private final String excerpt;
+    private final LocalDateTime createdAt;
+    private final Long authorId;
+    private final String authorUsername;
+    private final Long themeId;
+    private final String themeName;
+    private final long commentCount;
+
+    public PostSummary(Long id, String title, String excerpt, LocalDateTime createdAt,
+                       Long authorId, String authorUsername, Long themeId, String themeName, Long commentCount) {
+        this.id = id;
+        this.title = title;
+        this.excerpt = excerpt;
+        this.createdAt = createdAt;
+        this.authorId = authorId;
+        this.authorUsername = authorUsername;
+        this.themeId = themeId;
+        this.themeName = themeName;
+        this.commentCount = commentCount != null ? commentCount : 0;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorUsername() {
+        return authorUsername;
+    }
+
+    public Long getThemeId() {
+        return themeId;
+    }
+
+    public String getThemeName() {
+        return themeName;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+}
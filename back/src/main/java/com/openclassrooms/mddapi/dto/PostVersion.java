@@ -0,0 +1,21 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Empreinte de version d'un article et de ses commentaires, calculée par agrégat SQL
+ * sans charger les entités (ETag / Last-Modified).
+ */
+public interface PostVersion {
+    Long getVersion();
+
+    LocalDateTime getLastModified();
+
+    Long getCommentCount();
+
+    Long getLastCommentId();
+
+    Long getCommentVersions();
+
+    LocalDateTime getLastCommentModified();
+}
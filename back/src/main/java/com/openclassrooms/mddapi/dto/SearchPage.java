@@ -0,0 +1,50 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page de résultats de recherche classés par pertinence, avec les facettes thème et auteur
+ * (nombre d'articles correspondants par identifiant, avant application des filtres).
+ */
+public class SearchPage<T> {
+    private final List<T> items;
+    private final int total;
+    private final int page;
+    private final int size;
+    private final Map<Long, Integer> themes;
+    private final Map<Long, Integer> authors;
+
+    public SearchPage(List<T> items, int total, int page, int size, Map<Long, Integer> themes, Map<Long, Integer> authors) {
+        this.items = items;
+        this.total = total;
+        this.page = page;
+        this.size = size;
+        this.themes = themes;
+        this.authors = authors;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Map<Long, Integer> getThemes() {
+        return themes;
+    }
+
+    public Map<Long, Integer> getAuthors() {
+        return authors;
+    }
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.mddapi.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Statistiques d'un thème, servies depuis les compteurs en mémoire.
+ */
+public class ThemeStats {
+    private final Long themeId;
+    private final String name;
+    private final long followers;
+    private final long posts;
+    private final long postsLast24h;
+    private final long postsLast7d;
+    private final long commentsLast24h;
+    private final LocalDateTime lastActivity;
+
+    public ThemeStats(Long themeId, String name, long followers, long posts, long postsLast24h, long postsLast7d,
+                      long commentsLast24h, LocalDateTime lastActivity) {
+        this.themeId = themeId;
+        this.name = name;
+        this.followers = followers;
+        this.posts = posts;
+        this.postsLast24h = postsLast24h;
+        this.postsLast7d = postsLast7d;
+        this.commentsLast24h = commentsLast24h;
+        this.lastActivity = lastActivity;
+    }
+
+    public Long getThemeId() {
+        return themeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getFollowers() {
+        return followers;
+    }
+
+    public long getPosts() {
+        return posts;
+    }
+
+    public long getPostsLast24h() {
+        return postsLast24h;
+    }
+
+    public long getPostsLast7d() {
+        return postsLast7d;
+    }
+
+    public long getCommentsLast24h() {
+        return commentsLast24h;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+}
@@ -0,0 +1,345 @@
+package com.openclassrooms.mddapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test de charge hors ligne (profil loadtest).
+ * <p>
+ * Une fois l'application démarrée : génération des données, puis des utilisateurs virtuels enchaînent
+ * fil d'actualité, détail d'article, commentaires et connexions selon la répartition configurée.
+ * Le rapport donne par endpoint p50/p99, débit, taux d'erreur et nombre moyen de requêtes SQL,
+ * dans les logs et en JSON. Client et serveur partagent la machine : les chiffres servent à comparer
+ * deux versions entre elles, pas à dimensionner la production.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestDriver {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestDriver.class);
+
+    enum Endpoint {
+        FEED("GET /api/feed"),
+        DETAIL("GET /api/posts/{id}"),
+        COMMENT("POST /api/comments/post/{postId}"),
+        LOGIN("POST /api/auth/login");
+
+        // Clé du motif d'URL dans SqlCountingFilter
+        private final String route;
+
+        Endpoint(String route) {
+            this.route = route;
+        }
+    }
+
+    private final LoadTestSeeder seeder;
+    private final SqlCountingFilter sqlCountingFilter;
+    private final ObjectMapper objectMapper;
+
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final int[] weights;
+    private final String reportPath;
+    private final boolean exitOnComplete;
+    private final int users;
+
+    @Autowired
+    public LoadTestDriver(LoadTestSeeder seeder, SqlCountingFilter sqlCountingFilter, ObjectMapper objectMapper,
+                          @Value("${loadtest.concurrency:16}") int concurrency,
+                          @Value("${loadtest.warmup:10s}") Duration warmup,
+                          @Value("${loadtest.duration:60s}") Duration duration,
+                          @Value("${loadtest.mix.feed:50}") int feedWeight,
+                          @Value("${loadtest.mix.detail:30}") int detailWeight,
+                          @Value("${loadtest.mix.comment:10}") int commentWeight,
+                          @Value("${loadtest.mix.login:10}") int loginWeight,
+                          @Value("${loadtest.report:target/loadtest-report.json}") String reportPath,
+                          @Value("${loadtest.exit-on-complete:true}") boolean exitOnComplete,
+                          @Value("${loadtest.seed.users:2000}") int users) {
+        this.seeder = seeder;
+        this.sqlCountingFilter = sqlCountingFilter;
+        this.objectMapper = objectMapper;
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.weights = new int[]{feedWeight, detailWeight, commentWeight, loginWeight};
+        this.reportPath = reportPath;
+        this.exitOnComplete = exitOnComplete;
+        this.users = users;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        Thread driver = new Thread(() -> {
+            int exitCode = 0;
+            try {
+                run("http://localhost:" + port);
+            } catch (Exception e) {
+                log.error("Échec du test de charge", e);
+                exitCode = 1;
+            }
+            if (exitOnComplete) {
+                int code = exitCode;
+                System.exit(SpringApplication.exit(context, () -> code));
+            }
+        }, "loadtest-driver");
+        driver.start();
+    }
+
+    private void run(String baseUrl) throws Exception {
+        List<Long> postIds = seeder.seed();
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long startedAt = System.nanoTime();
+        long measureFrom = startedAt + warmup.toNanos();
+        long endAt = measureFrom + duration.toNanos();
+        log.info("Test de charge : {} utilisateurs virtuels, préchauffage {} s, mesure {} s",
+                concurrency, warmup.getSeconds(), duration.getSeconds());
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<VirtualUser> virtualUsers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            VirtualUser user = new VirtualUser(client, baseUrl, postIds, i, measureFrom, endAt);
+            virtualUsers.add(user);
+            pool.submit(user);
+        }
+
+        // Les compteurs SQL ne couvrent que la période mesurée
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(measureFrom - System.nanoTime()));
+        sqlCountingFilter.reset();
+        pool.shutdown();
+        pool.awaitTermination(duration.toMillis() + 60_000, TimeUnit.MILLISECONDS);
+
+        report(virtualUsers, (System.nanoTime() - measureFrom) / 1e9);
+    }
+
+    private void report(List<VirtualUser> virtualUsers, double seconds) throws IOException {
+        Map<String, Double> sqlByRoute = sqlCountingFilter.averageStatements();
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        StringBuilder table = new StringBuilder(String.format("%n%-36s %9s %7s %9s %9s %9s %9s %8s",
+                "endpoint", "requêtes", "erreurs", "req/s", "p50 ms", "p99 ms", "max ms", "SQL/req"));
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            Samples merged = new Samples();
+            Map<Integer, Long> errorsByStatus = new TreeMap<>();
+            for (VirtualUser user : virtualUsers) {
+                merged.addAll(user.samples.get(endpoint));
+                user.errors.get(endpoint).forEach((status, count) -> errorsByStatus.merge(status, count, Long::sum));
+            }
+            long errors = errorsByStatus.values().stream().mapToLong(Long::longValue).sum();
+            long[] latencies = merged.sorted();
+            double p50 = percentileMillis(latencies, 0.50);
+            double p99 = percentileMillis(latencies, 0.99);
+            double max = latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6;
+            double throughput = latencies.length / seconds;
+            double sql = sqlByRoute.getOrDefault(endpoint.route, 0.0);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("route", endpoint.route);
+            result.put("requests", latencies.length);
+            result.put("errors", errors);
+            result.put("errorsByStatus", errorsByStatus);
+            result.put("throughputPerSecond", throughput);
+            result.put("p50Millis", p50);
+            result.put("p99Millis", p99);
+            result.put("maxMillis", max);
+            result.put("sqlStatementsPerRequest", sql);
+            endpoints.put(endpoint.name().toLowerCase(), result);
+
+            table.append(String.format("%n%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %8.2f",
+                    endpoint.route, latencies.length, errors, throughput, p50, p99, max, sql));
+        }
+        log.info("Résultats du test de charge ({} s mesurées) :{}", String.format("%.1f", seconds), table);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("concurrency", concurrency);
+        report.put("measuredSeconds", seconds);
+        report.put("endpoints", endpoints);
+        report.put("sqlStatementsPerRoute", sqlByRoute);
+        File file = new File(reportPath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+        log.info("Rapport écrit dans {}", file.getAbsolutePath());
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Utilisateur virtuel : se connecte, puis enchaîne les appels jusqu'à la fin du test.
+     * Ses mesures restent locales au thread et sont fusionnées à la fin.
+     */
+    private final class VirtualUser implements Runnable {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final List<Long> postIds;
+        private final Random random;
+        private final String email;
+        private final long measureFrom;
+        private final long endAt;
+        private final Map<Endpoint, Samples> samples = new EnumMap<>(Endpoint.class);
+        private final Map<Endpoint, Map<Integer, Long>> errors = new EnumMap<>(Endpoint.class);
+        private String token;
+
+        VirtualUser(HttpClient client, String baseUrl, List<Long> postIds, int index, long measureFrom, long endAt) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.postIds = postIds;
+            this.random = new Random(index);
+            this.email = LoadTestSeeder.email(index % Math.max(1, users));
+            this.measureFrom = measureFrom;
+            this.endAt = endAt;
+            for (Endpoint endpoint : Endpoint.values()) {
+                samples.put(endpoint, new Samples());
+                errors.put(endpoint, new TreeMap<>());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < endAt) {
+                    // Sans jeton valide (connexion refusée ou expirée), on se reconnecte d'abord
+                    call(token == null ? Endpoint.LOGIN : pick());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Utilisateur virtuel interrompu", e);
+            }
+        }
+
+        private Endpoint pick() {
+            int total = Arrays.stream(weights).sum();
+            int draw = random.nextInt(total);
+            for (Endpoint endpoint : Endpoint.values()) {
+                draw -= weights[endpoint.ordinal()];
+                if (draw < 0) {
+                    return endpoint;
+                }
+            }
+            return Endpoint.FEED;
+        }
+
+        private void call(Endpoint endpoint) throws IOException, InterruptedException {
+            HttpRequest request = request(endpoint);
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long end = System.nanoTime();
+
+            int status = response.statusCode();
+            if (endpoint == Endpoint.LOGIN && status == 200) {
+                JsonNode body = objectMapper.readTree(response.body());
+                token = body.path("token").asText();
+            } else if (status == 401) {
+                token = null;
+            }
+            if (start >= measureFrom && end <= endAt) {
+                samples.get(endpoint).add(end - start);
+                if (status >= 400) {
+                    errors.get(endpoint).merge(status, 1L, Long::sum);
+                }
+            }
+        }
+
+        private HttpRequest request(Endpoint endpoint) throws IOException {
+            Long postId = postIds.get(random.nextInt(postIds.size()));
+            HttpRequest.Builder builder;
+            switch (endpoint) {
+                case FEED:
+                    builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/feed?limit=20")).GET();
+                    break;
+                case DETAIL:
+                    builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/posts/" + postId)).GET();
+                    break;
+                case COMMENT:
+                    builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/comments/post/" + postId))
+                            .POST(json(Map.of("content", "Commentaire de charge")));
+                    break;
+                default:
+                    builder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                            .POST(json(Map.of("identifier", email, "password", LoadTestSeeder.PASSWORD)));
+                    break;
+            }
+            if (token != null && endpoint != Endpoint.LOGIN) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return builder.header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+        }
+
+        private HttpRequest.BodyPublisher json(Object body) throws IOException {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+        }
+    }
+
+    /**
+     * Latences en nanosecondes dans un tableau primitif extensible.
+     */
+    private static final class Samples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
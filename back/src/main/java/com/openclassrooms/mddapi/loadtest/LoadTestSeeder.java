@@ -0,0 +1,261 @@
+package com.openclassrooms.mddapi.loadtest;
+
+import com.openclassrooms.mddapi.services.PostSearchIndex;
+import com.openclassrooms.mddapi.services.SubscriptionIndex;
+import com.openclassrooms.mddapi.services.ThemeCatalog;
+import com.openclassrooms.mddapi.services.ThemeStatsService;
+import com.openclassrooms.mddapi.services.TimelineService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Génère les données synthétiques du test de charge par insertions JDBC groupées :
+ * utilisateurs, thèmes, abonnements, articles et commentaires, en volumes configurables.
+ * <p>
+ * Avec des réplicas H2 ({@code datasource.replicas.enabled}), chaque réplica reçoit une copie des données générées :
+ * les écritures du test restent ensuite sur le primaire, ce qui distingue les lectures servies par un réplica.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestSeeder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestSeeder.class);
+
+    public static final String PASSWORD = "Passw0rd!";
+    private static final int BATCH_SIZE = 1000;
+    private static final int HISTORY_DAYS = 90;
+    // Compteurs dénormalisés des articles, renseignés après l'insertion des commentaires
+    private static final String RECOUNT_COMMENTS = "UPDATE article a SET comment_count = "
+            + "(SELECT COUNT(*) FROM commentaire c WHERE c.article_id = a.id)";
+    private static final String[] WORDS = {
+            "java", "spring", "angular", "hibernate", "requête", "index", "performance", "cache", "thread",
+            "mémoire", "latence", "base", "données", "sécurité", "jeton", "test", "déploiement", "docker",
+            "api", "rest", "json", "pagination", "transaction", "verrou", "article", "commentaire", "thème",
+            "réseau", "serveur", "client", "navigateur", "typescript", "composant", "service", "module",
+            "build", "maven", "gradle", "kotlin", "python", "algorithme", "structure", "liste", "arbre"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ThemeCatalog themeCatalog;
+    private final PostSearchIndex postSearchIndex;
+    private final TimelineService timelineService;
+    private final SubscriptionIndex subscriptionIndex;
+    private final ThemeStatsService themeStatsService;
+
+    private final int users;
+    private final int themes;
+    private final int followsPerUser;
+    private final int posts;
+    private final int commentsPerPost;
+    private final long randomSeed;
+    private final List<String> replicaUrls;
+    private final String username;
+    private final String password;
+
+    @Autowired
+    public LoadTestSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, ThemeCatalog themeCatalog,
+                          PostSearchIndex postSearchIndex, TimelineService timelineService,
+                          SubscriptionIndex subscriptionIndex, ThemeStatsService themeStatsService,
+                          @Value("${loadtest.seed.users:2000}") int users,
+                          @Value("${loadtest.seed.themes:30}") int themes,
+                          @Value("${loadtest.seed.follows-per-user:5}") int followsPerUser,
+                          @Value("${loadtest.seed.posts:20000}") int posts,
+                          @Value("${loadtest.seed.comments-per-post:5}") int commentsPerPost,
+                          @Value("${loadtest.seed.random-seed:42}") long randomSeed,
+                          @Value("${datasource.replicas.enabled:false}") boolean replicasEnabled,
+                          @Value("${datasource.replicas.urls:}") List<String> replicaUrls,
+                          @Value("${spring.datasource.username:}") String username,
+                          @Value("${spring.datasource.password:}") String password) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.themeCatalog = themeCatalog;
+        this.postSearchIndex = postSearchIndex;
+        this.timelineService = timelineService;
+        this.subscriptionIndex = subscriptionIndex;
+        this.themeStatsService = themeStatsService;
+        this.users = users;
+        this.themes = themes;
+        this.followsPerUser = followsPerUser;
+        this.posts = posts;
+        this.commentsPerPost = commentsPerPost;
+        this.randomSeed = randomSeed;
+        this.replicaUrls = replicasEnabled ? replicaUrls : List.of();
+        this.username = username;
+        this.password = password;
+    }
+
+    public static String email(int userIndex) {
+        return "user" + userIndex + "@loadtest.local";
+    }
+
+    /**
+     * Insère les données puis recharge les structures en mémoire qui en dépendent.
+     *
+     * @return identifiants des articles créés
+     */
+    public List<Long> seed() {
+        long start = System.currentTimeMillis();
+        Random random = new Random(randomSeed);
+        LocalDateTime now = LocalDateTime.now();
+
+        // Un seul hachage BCrypt pour tous les comptes
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            userRows.add(new Object[]{"user" + i, email(i), passwordHash, timestamp(now.minusDays(HISTORY_DAYS))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO utilisateur (username, email, mot_de_passe, date_inscription) VALUES (?, ?, ?, ?)",
+                userRows, BATCH_SIZE, (ps, row) -> setAll(ps, row));
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM utilisateur ORDER BY id", Long.class);
+
+        List<Object[]> themeRows = new ArrayList<>(themes);
+        for (int i = 0; i < themes; i++) {
+            themeRows.add(new Object[]{"theme-" + i, "Thème de test " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO theme (nom, description, version) VALUES (?, ?, 0)",
+                themeRows, BATCH_SIZE, (ps, row) -> setAll(ps, row));
+        List<Long> themeIds = jdbcTemplate.queryForList("SELECT id FROM theme ORDER BY id", Long.class);
+
+        List<Object[]> followRows = new ArrayList<>(users * followsPerUser);
+        for (Long userId : userIds) {
+            Set<Long> followed = new HashSet<>();
+            int follows = Math.min(followsPerUser, themeIds.size());
+            while (followed.size() < follows) {
+                followed.add(themeIds.get(skewed(random, themeIds.size())));
+            }
+            for (Long themeId : followed) {
+                followRows.add(new Object[]{userId, themeId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO abonnement (utilisateur_id, theme_id) VALUES (?, ?)",
+                followRows, BATCH_SIZE, (ps, row) -> setAll(ps, row));
+
+        List<Object[]> postRows = new ArrayList<>(posts);
+        for (int i = 0; i < posts; i++) {
+            postRows.add(new Object[]{
+                    sentence(random, 4 + random.nextInt(6)),
+                    sentence(random, 80 + random.nextInt(220)),
+                    timestamp(now.minusSeconds(random.nextInt(HISTORY_DAYS * 24 * 3600))),
+                    userIds.get(random.nextInt(userIds.size())),
+                    themeIds.get(skewed(random, themeIds.size()))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO article (titre, contenu, date_creation, auteur_id, theme_id, version, comment_count) "
+                        + "VALUES (?, ?, ?, ?, ?, 0, 0)",
+                postRows, BATCH_SIZE, (ps, row) -> setAll(ps, row));
+        List<Long> postIds = jdbcTemplate.queryForList("SELECT id FROM article ORDER BY id", Long.class);
+
+        List<Object[]> commentRows = new ArrayList<>(posts * commentsPerPost);
+        for (Long postId : postIds) {
+            // Entre 0 et 2 × la moyenne configurée
+            int count = commentsPerPost == 0 ? 0 : random.nextInt(2 * commentsPerPost + 1);
+            for (int c = 0; c < count; c++) {
+                commentRows.add(new Object[]{
+                        sentence(random, 5 + random.nextInt(30)),
+                        timestamp(now.minusSeconds(random.nextInt(HISTORY_DAYS * 24 * 3600))),
+                        userIds.get(random.nextInt(userIds.size())),
+                        postId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO commentaire (contenu, date_commentaire, auteur_id, article_id, version) "
+                        + "VALUES (?, ?, ?, ?, 0)",
+                commentRows, BATCH_SIZE, (ps, row) -> setAll(ps, row));
+        jdbcTemplate.update(RECOUNT_COMMENTS);
+        copyToReplicas();
+
+        themeCatalog.reload();
+        subscriptionIndex.reload();
+        themeStatsService.reconcile();
+        if (postSearchIndex.isEnabled()) {
+            postSearchIndex.rebuild();
+        }
+        if (timelineService.isEnabled()) {
+            timelineService.rebuildAll();
+        }
+
+        log.info("Données de test générées en {} ms : {} utilisateurs, {} thèmes, {} abonnements, {} articles, {} commentaires",
+                System.currentTimeMillis() - start, userIds.size(), themeIds.size(), followRows.size(),
+                postIds.size(), commentRows.size());
+        return postIds;
+    }
+
+    // Instantané du primaire (schéma et données) rejoué sur chaque réplica H2
+    private void copyToReplicas() {
+        if (replicaUrls.stream().noneMatch(url -> url.trim().startsWith("jdbc:h2:"))) {
+            return;
+        }
+        try {
+            Path script = Files.createTempFile("loadtest-replica", ".sql");
+            try {
+                jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+                for (String url : replicaUrls) {
+                    if (!url.trim().startsWith("jdbc:h2:")) {
+                        continue;
+                    }
+                    try (Connection connection = DriverManager.getConnection(url.trim(), username, password);
+                         Statement statement = connection.createStatement()) {
+                        statement.execute("DROP ALL OBJECTS");
+                        statement.execute("RUNSCRIPT FROM '" + script + "'");
+                    }
+                    log.info("Réplica {} initialisé depuis le primaire", url.trim());
+                }
+            } finally {
+                Files.deleteIfExists(script);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Copie des données vers les réplicas impossible", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void setAll(PreparedStatement ps, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            ps.setObject(i + 1, row[i]);
+        }
+    }
+
+    // Répartition inégale : les premiers thèmes sont nettement plus suivis et plus actifs
+    private static int skewed(Random random, int size) {
+        double u = random.nextDouble();
+        return Math.min(size - 1, (int) (size * u * u));
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime);
+    }
+}
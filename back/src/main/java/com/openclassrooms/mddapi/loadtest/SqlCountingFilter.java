@@ -0,0 +1,107 @@
+package com.openclassrooms.mddapi.loadtest;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attribue à chaque endpoint (méthode + motif d'URL) le nombre de requêtes SQL exécutées,
+ * filtre de sécurité compris (placé en tête de chaîne) et traitement asynchrone en cloison compris.
+ */
+@Component
+@Profile("loadtest")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlCountingFilter extends OncePerRequestFilter {
+
+    private static final String COUNT_ATTRIBUTE = SqlCountingFilter.class.getName() + ".COUNT";
+
+    private final Map<String, Stats> statsByEndpoint = new ConcurrentHashMap<>();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AtomicLong count = (AtomicLong) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) {
+            count = new AtomicLong();
+            request.setAttribute(COUNT_ATTRIBUTE, count);
+            // Traitement déporté sur un thread de cloison : le compteur de la requête l'y suit
+            WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(COUNT_ATTRIBUTE, new CountBinder(count));
+        }
+        SqlStatementCounter.bind(count);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatementCounter.unbind();
+            // Requête asynchrone : comptabilisée lors du dispatch final, une fois la réponse produite
+            if (!request.isAsyncStarted()) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                String endpoint = request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED");
+                Stats stats = statsByEndpoint.computeIfAbsent(endpoint, key -> new Stats());
+                stats.requests.increment();
+                stats.statements.add(count.get());
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    public void reset() {
+        statsByEndpoint.clear();
+    }
+
+    /**
+     * Nombre moyen de requêtes SQL par appel, par endpoint.
+     */
+    public Map<String, Double> averageStatements() {
+        Map<String, Double> averages = new TreeMap<>();
+        statsByEndpoint.forEach((endpoint, stats) -> {
+            long requests = stats.requests.sum();
+            averages.put(endpoint, requests == 0 ? 0 : (double) stats.statements.sum() / requests);
+        });
+        return averages;
+    }
+
+    private static final class Stats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder statements = new LongAdder();
+    }
+
+    private static final class CountBinder implements CallableProcessingInterceptor {
+        private final AtomicLong count;
+
+        CountBinder(AtomicLong count) {
+            this.count = count;
+        }
+
+        @Override
+        public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+            SqlStatementCounter.bind(count);
+        }
+
+        @Override
+        public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+            SqlStatementCounter.unbind();
+        }
+    }
+}
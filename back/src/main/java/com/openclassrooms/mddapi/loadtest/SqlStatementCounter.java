@@ -0,0 +1,34 @@
+package com.openclassrooms.mddapi.loadtest;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compte les requêtes SQL préparées par Hibernate dans le compteur lié au thread courant.
+ * Déclaré via {@code hibernate.session_factory.statement_inspector} dans le profil loadtest.
+ * <p>
+ * Le compteur appartient à la requête HTTP : il est lié successivement au thread Tomcat et au thread
+ * de cloison qui exécute le traitement asynchrone (voir {@link SqlCountingFilter}).
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<AtomicLong> COUNT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        AtomicLong count = COUNT.get();
+        if (count != null) {
+            count.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void bind(AtomicLong count) {
+        COUNT.set(count);
+    }
+
+    public static void unbind() {
+        COUNT.remove();
+    }
+}
@@ -1,14 +1,20 @@
 package com.openclassrooms.mddapi.models;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "commentaire")
+@NamedEntityGraph(name = Comment.GRAPH_WITH_AUTHOR, attributeNodes = @NamedAttributeNode("author"))
+@Table(name = "commentaire", indexes = {
+        @Index(name = "idx_commentaire_article_date", columnList = "article_id, date_commentaire")
+})
 public class Comment {
 
+    public static final String GRAPH_WITH_AUTHOR = "Comment.withAuthor";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -19,12 +25,22 @@ public class Comment {
     @Column(name = "date_commentaire")
     private LocalDateTime createdAt;
 
+    @Column(name = "date_modification")
+    private LocalDateTime updatedAt;
+
+    // Incrémentée à chaque modification : sert au verrouillage optimiste et aux ETag
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private Long version;
+
     @ManyToOne
     @JoinColumn(name = "auteur_id", nullable = false)
-    @JsonIgnoreProperties({"posts", "comments", "followedThemes", "password"})
+    @JsonIgnoreProperties({"posts", "comments", "followedThemes", "password", "hibernateLazyInitializer", "handler"})
     private User author;
 
-    @ManyToOne
+    // Jamais sérialisé (@JsonBackReference) : inutile de charger l'article avec chaque commentaire
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "article_id", nullable = false)
     @JsonBackReference
     private Post post;
@@ -32,6 +48,12 @@ public class Comment {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = null;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 
     // Getters and Setters
@@ -60,13 +82,20 @@ public class Comment {
     }
 
     public LocalDateTime getUpdatedAt() {
-        // Cette propriété n'est pas dans le schéma de BDD
-        // On utilise createdAt comme substitut tout en ajoutant un commentaire pour débogage
-        return createdAt; // Substitut de updatedAt
+        // Un contenu jamais modifié a pour date de modification sa date de création
+        return updatedAt != null ? updatedAt : createdAt;
     }
 
     public void setUpdatedAt(LocalDateTime updatedAt) {
-        // Cette méthode ne fait rien car la propriété n'existe pas en BDD
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
     }
 
     public User getAuthor() {
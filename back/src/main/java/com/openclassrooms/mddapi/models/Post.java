@@ -1,7 +1,10 @@
 package com.openclassrooms.mddapi.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.BatchSize;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -10,9 +13,26 @@ import java.util.List;
 import java.util.Set;
 
 @Entity
-@Table(name = "article")
+@NamedEntityGraph(name = Post.GRAPH_SUMMARY, attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("theme")
+})
+@NamedEntityGraph(name = Post.GRAPH_DETAIL, attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("theme"),
+        @NamedAttributeNode(value = "comments", subgraph = "comments")
+}, subgraphs = @NamedSubgraph(name = "comments", attributeNodes = @NamedAttributeNode("author")))
+@Table(name = "article", indexes = {
+        @Index(name = "idx_article_theme_date", columnList = "theme_id, date_creation"),
+        @Index(name = "idx_article_auteur_date", columnList = "auteur_id, date_creation"),
+        @Index(name = "idx_article_date", columnList = "date_creation")
+})
 public class Post {
 
+    // Plans de chargement : auteur et thème pour les listes, plus les commentaires pour le détail
+    public static final String GRAPH_SUMMARY = "Post.summary";
+    public static final String GRAPH_DETAIL = "Post.detail";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,9 +46,24 @@ public class Post {
     @Column(name = "date_creation")
     private LocalDateTime createdAt;
 
+    @Column(name = "date_modification")
+    private LocalDateTime updatedAt;
+
+    // Incrémentée à chaque modification : sert au verrouillage optimiste et aux ETag
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private Long version;
+
+    // Nombre de commentaires dénormalisé : les listes l'affichent sans lire commentaire.
+    // Maintenu par requête atomique (PostRepository.incrementCommentCount), jamais réécrit par l'entité
+    @Column(name = "comment_count", nullable = false, updatable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long commentCount;
+
     @ManyToOne
     @JoinColumn(name = "auteur_id", nullable = false)
-    @JsonIgnoreProperties({"posts", "comments", "followedThemes", "password"})
+    @JsonIgnoreProperties({"posts", "comments", "followedThemes", "password", "hibernateLazyInitializer", "handler"})
     private User author;
 
     @ManyToOne
@@ -37,6 +72,7 @@ public class Post {
     private Theme theme;
 
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @JsonManagedReference
     private List<Comment> comments = new ArrayList<>();
 
@@ -47,6 +83,12 @@ public class Post {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = null;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 
     // Getters and Setters
@@ -83,12 +125,28 @@ public class Post {
     }
 
     public LocalDateTime getUpdatedAt() {
-        // Cette propriété n'est pas dans le schéma de BDD, on retourne la date de création
-        return createdAt;
+        // Un contenu jamais modifié a pour date de modification sa date de création
+        return updatedAt != null ? updatedAt : createdAt;
     }
 
     public void setUpdatedAt(LocalDateTime updatedAt) {
-        // Cette méthode ne fait rien car la propriété n'existe pas en BDD
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+
+    public void setCommentCount(long commentCount) {
+        this.commentCount = commentCount;
     }
 
     public User getAuthor() {
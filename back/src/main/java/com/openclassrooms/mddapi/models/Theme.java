@@ -20,6 +20,12 @@ public class Theme {
     @Column(name = "description", columnDefinition = "TEXT")
     private String description;
 
+    // Incrémentée à chaque modification : sert au verrouillage optimiste et aux ETag
+    @Version
+    @Column(name = "version", nullable = false)
+    @JsonIgnore
+    private Long version;
+
     @ManyToMany(mappedBy = "followedThemes")
     @JsonIgnore
     private Set<User> followers = new HashSet<>();
@@ -53,6 +59,14 @@ public class Theme {
         this.description = description;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Set<User> getFollowers() {
         return followers;
     }
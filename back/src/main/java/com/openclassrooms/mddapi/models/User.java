@@ -10,7 +10,9 @@ import java.util.Set;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "utilisateur")
+@Table(name = "utilisateur", indexes = {
+        @Index(name = "idx_utilisateur_date_inscription", columnList = "date_inscription")
+})
 public class User {
 
     @Id
@@ -3,14 +3,61 @@ package com.openclassrooms.mddapi.repositories;
 import com.openclassrooms.mddapi.models.Comment;
 import com.openclassrooms.mddapi.models.Post;
 import com.openclassrooms.mddapi.models.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface CommentRepository extends JpaRepository<Comment, Long> {
+public interface CommentRepository extends JpaRepository<Comment, Long>, CommentStreamRepository {
+    @EntityGraph(Comment.GRAPH_WITH_AUTHOR)
     List<Comment> findByPost(Post post);
+
+    @EntityGraph(Comment.GRAPH_WITH_AUTHOR)
     List<Comment> findByAuthor(User author);
+
+    @EntityGraph(Comment.GRAPH_WITH_AUTHOR)
     List<Comment> findByPostOrderByCreatedAtDesc(Post post);
+
+    // Pagination par curseur (date_commentaire, id)
+    @EntityGraph(Comment.GRAPH_WITH_AUTHOR)
+    @Query("SELECT c FROM Comment c WHERE c.post.id = :postId ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findPageByPostId(@Param("postId") Long postId, Pageable pageable);
+
+    @EntityGraph(Comment.GRAPH_WITH_AUTHOR)
+    @Query("SELECT c FROM Comment c WHERE c.post.id = :postId "
+            + "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) "
+            + "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findPageByPostIdBefore(@Param("postId") Long postId, @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id, Pageable pageable);
+
+    // Derniers commentaires de plusieurs articles en une requête (fenêtre par article)
+    @Query(value = "SELECT * FROM ("
+            + "SELECT c.*, ROW_NUMBER() OVER (PARTITION BY c.article_id ORDER BY c.date_commentaire DESC, c.id DESC) AS rang "
+            + "FROM commentaire c WHERE c.article_id IN (:postIds)) derniers "
+            + "WHERE derniers.rang <= :perPost ORDER BY derniers.article_id, derniers.rang",
+            nativeQuery = true)
+    List<Comment> findLatestByPostIds(@Param("postIds") Collection<Long> postIds, @Param("perPost") int perPost);
+
+    // Agrégats de réconciliation des statistiques de thèmes : [themeId, max(createdAt)]
+    @Query("SELECT p.theme.id, MAX(c.createdAt) FROM Comment c JOIN c.post p GROUP BY p.theme.id")
+    List<Object[]> findLastDateByTheme();
+
+    // Commentaires par thème et par heure : [themeId, année, mois, jour, heure, count]
+    @Query("SELECT p.theme.id, YEAR(c.createdAt), MONTH(c.createdAt), DAY(c.createdAt), HOUR(c.createdAt), COUNT(c) "
+            + "FROM Comment c JOIN c.post p WHERE c.createdAt >= :since "
+            + "GROUP BY p.theme.id, YEAR(c.createdAt), MONTH(c.createdAt), DAY(c.createdAt), HOUR(c.createdAt)")
+    List<Object[]> countByThemeAndHourSince(@Param("since") LocalDateTime since);
+
+    // Suppression conditionnelle : renvoie 0 si le commentaire a déjà été supprimé par une requête concurrente
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.id = :id AND c.author.id = :authorId")
+    int deleteByIdAndAuthorId(@Param("id") Long id, @Param("authorId") Long authorId);
 }
@@ -0,0 +1,16 @@
+package com.openclassrooms.mddapi.repositories;
+
+import com.openclassrooms.mddapi.models.Comment;
+
+import java.util.stream.Stream;
+
+/**
+ * Commentaires lus en flux pour les exports, auteur chargé dans la même ligne.
+ * Le flux doit être fermé et consommé dans une transaction.
+ */
+public interface CommentStreamRepository {
+
+    Stream<Comment> streamByThemeId(Long themeId);
+
+    Stream<Comment> streamByAuthorId(Long authorId);
+}
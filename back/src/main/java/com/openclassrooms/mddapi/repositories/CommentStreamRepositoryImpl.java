@@ -0,0 +1,37 @@
+package com.openclassrooms.mddapi.repositories;
+
+import com.openclassrooms.mddapi.models.Comment;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.Stream;
+
+class CommentStreamRepositoryImpl implements CommentStreamRepository {
+
+    // L'article n'est pas chargé : son identifiant est lisible sur le proxy
+    private static final String SELECT = "SELECT c FROM Comment c JOIN FETCH c.author ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int fetchSize;
+
+    CommentStreamRepositoryImpl(@Value(StreamingQueries.FETCH_SIZE) int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Stream<Comment> streamByThemeId(Long themeId) {
+        return StreamingQueries.stream(entityManager
+                .createQuery(SELECT + "WHERE c.post.theme.id = :themeId ORDER BY c.post.id, c.id", Comment.class)
+                .setParameter("themeId", themeId), fetchSize);
+    }
+
+    @Override
+    public Stream<Comment> streamByAuthorId(Long authorId) {
+        return StreamingQueries.stream(entityManager
+                .createQuery(SELECT + "WHERE c.author.id = :authorId ORDER BY c.id", Comment.class)
+                .setParameter("authorId", authorId), fetchSize);
+    }
+}
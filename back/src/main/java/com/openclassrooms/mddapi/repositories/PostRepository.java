@@ -1,32 +1,197 @@
 package com.openclassrooms.mddapi.repositories;
 
+import com.openclassrooms.mddapi.dto.PostDocument;
+import com.openclassrooms.mddapi.dto.PostSummary;
+import com.openclassrooms.mddapi.dto.PostVersion;
 import com.openclassrooms.mddapi.models.Post;
 import com.openclassrooms.mddapi.models.Theme;
 import com.openclassrooms.mddapi.models.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
-public interface PostRepository extends JpaRepository<Post, Long> {
+public interface PostRepository extends JpaRepository<Post, Long>, PostStreamRepository {
+    @EntityGraph(Post.GRAPH_SUMMARY)
     List<Post> findByAuthor(User author);
+
+    @EntityGraph(Post.GRAPH_SUMMARY)
     List<Post> findByTheme(Theme theme);
-    
+
+    @EntityGraph(Post.GRAPH_SUMMARY)
+    List<Post> findByThemeInOrderByCreatedAtDesc(Collection<Theme> themes);
+
+    @EntityGraph(Post.GRAPH_SUMMARY)
     @Query("SELECT p FROM Post p WHERE p.author = ?1 ORDER BY p.createdAt DESC")
     List<Post> findByAuthorOrderByCreatedAtDesc(User author);
-    
+
+    // Détail d'un article : auteur, thème, commentaires et leurs auteurs en une seule requête
+    @EntityGraph(Post.GRAPH_DETAIL)
+    @Query("SELECT p FROM Post p WHERE p.id = :id")
+    Optional<Post> findDetailById(@Param("id") Long id);
+
+    // Empreinte de version pour les requêtes conditionnelles (If-None-Match / If-Modified-Since)
+    @Query("SELECT p.version AS version, COALESCE(p.updatedAt, p.createdAt) AS lastModified, "
+            + "COUNT(c.id) AS commentCount, MAX(c.id) AS lastCommentId, SUM(c.version) AS commentVersions, "
+            + "MAX(COALESCE(c.updatedAt, c.createdAt)) AS lastCommentModified "
+            + "FROM Post p LEFT JOIN p.comments c WHERE p.id = :id "
+            + "GROUP BY p.id, p.version, p.updatedAt, p.createdAt")
+    Optional<PostVersion> findVersionById(@Param("id") Long id);
+
+    // Lecture par tranches d'identifiants pour la reconstruction de l'index de recherche
+    @Query("SELECT p.id AS id, p.title AS title, p.content AS content, p.theme.id AS themeId, "
+            + "p.author.id AS authorId "
+            + "FROM Post p WHERE p.id > :after AND p.id <= :upTo ORDER BY p.id")
+    List<PostDocument> findDocumentsByIdRange(@Param("after") Long after, @Param("upTo") Long upTo);
+
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM Post p")
+    Long findMaxId();
+
+    // Ajuste le compteur dénormalisé sans passer par l'entité (ni version, ni perte de mise à jour concurrente).
+    // Renvoie 0 si l'article n'existe pas ; verrouille sa ligne jusqu'à la fin de la transaction
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta WHERE p.id = :id")
+    int incrementCommentCount(@Param("id") Long id, @Param("delta") long delta);
+
+    @Query("SELECT p.theme.id FROM Post p WHERE p.id = :id")
+    Optional<Long> findThemeIdById(@Param("id") Long id);
+
+    // Articles d'un auteur, avant leur suppression en cascade avec son compte : [id, themeId, createdAt]
+    @Query("SELECT p.id, p.theme.id, p.createdAt FROM Post p WHERE p.author.id = :authorId")
+    List<Object[]> findEntriesByAuthorId(@Param("authorId") Long authorId);
+
+    // Agrégats de réconciliation des statistiques de thèmes : [themeId, count, max(createdAt)]
+    @Query("SELECT p.theme.id, COUNT(p), MAX(p.createdAt) FROM Post p GROUP BY p.theme.id")
+    List<Object[]> countByTheme();
+
+    // Articles par thème et par heure : [themeId, année, mois, jour, heure, count]
+    @Query("SELECT p.theme.id, YEAR(p.createdAt), MONTH(p.createdAt), DAY(p.createdAt), HOUR(p.createdAt), COUNT(p) "
+            + "FROM Post p WHERE p.createdAt >= :since "
+            + "GROUP BY p.theme.id, YEAR(p.createdAt), MONTH(p.createdAt), DAY(p.createdAt), HOUR(p.createdAt)")
+    List<Object[]> countByThemeAndHourSince(@Param("since") LocalDateTime since);
+
+    // Retire des compteurs les commentaires d'un auteur, avant leur suppression en cascade avec son compte
+    @Modifying
+    @Query(value = "UPDATE article a SET comment_count = comment_count - "
+            + "(SELECT COUNT(*) FROM commentaire c WHERE c.article_id = a.id AND c.auteur_id = :authorId) "
+            + "WHERE a.id IN (SELECT c.article_id FROM commentaire c WHERE c.auteur_id = :authorId)",
+            nativeQuery = true)
+    int decrementCommentCountsByAuthorId(@Param("authorId") Long authorId);
+
+    // Projection des listes : extrait, auteur, thème et nombre de commentaires (dénormalisé) en une seule requête
+    String SUMMARY_SELECT = "SELECT new com.openclassrooms.mddapi.dto.PostSummary("
+            + "p.id, p.title, SUBSTRING(p.content, 1, " + PostSummary.EXCERPT_LENGTH + "), p.createdAt, "
+            + "a.id, a.username, t.id, t.name, p.commentCount) "
+            + "FROM Post p JOIN p.author a LEFT JOIN p.theme t ";
+
+    @Query(SUMMARY_SELECT + "WHERE p.id IN :ids")
+    List<PostSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Fil d'actualité : articles de tous les thèmes suivis, triés et paginés côté base
+    // (s'appuie sur l'index idx_article_theme_date)
+    @Query(SUMMARY_SELECT + "WHERE t.id IN "
+            + "(SELECT ft.id FROM User u JOIN u.followedThemes ft WHERE u.id = :userId)")
+    List<PostSummary> findFeedByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE t.id IN "
+            + "(SELECT ft.id FROM User u JOIN u.followedThemes ft WHERE u.id = :userId) "
+            + "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findFeedByUserIdBefore(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE t.id IN "
+            + "(SELECT ft.id FROM User u JOIN u.followedThemes ft WHERE u.id = :userId) "
+            + "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id)) "
+            + "ORDER BY p.createdAt ASC, p.id ASC")
+    List<PostSummary> findFeedByUserIdAfter(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id, Pageable pageable);
+
+    // Entrées des fils matérialisés : [id, date de création], dans l'ordre du fil SQL (date, id)
+    @Query("SELECT p.id, p.createdAt FROM Post p WHERE p.theme.id IN "
+            + "(SELECT t.id FROM User u JOIN u.followedThemes t WHERE u.id = :userId) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Object[]> findFeedEntriesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT p.id, p.createdAt FROM Post p WHERE p.theme.id IN "
+            + "(SELECT t.id FROM User u JOIN u.followedThemes t WHERE u.id = :userId) "
+            + "AND p.createdAt >= :since")
+    List<Object[]> findFeedEntriesByUserIdSince(@Param("userId") Long userId, @Param("since") LocalDateTime since);
+
+    @Query("SELECT p.id, p.createdAt FROM Post p WHERE p.theme.id IN :themeIds ORDER BY p.createdAt DESC, p.id DESC")
+    List<Object[]> findEntriesByThemeIdIn(@Param("themeIds") Collection<Long> themeIds, Pageable pageable);
+
+    @Query("SELECT p.id, p.createdAt FROM Post p WHERE p.theme.id IN :themeIds "
+            + "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Object[]> findEntriesByThemeIdInBefore(@Param("themeIds") Collection<Long> themeIds,
+                                                @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                                Pageable pageable);
+
+    // Pagination par curseur (date_creation, id) : requêtes de positionnement plutôt qu'OFFSET
+    @Query(SUMMARY_SELECT + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPage(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPageBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                     Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.id = :authorId ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPageByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE a.id = :authorId "
+            + "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPageByAuthorIdBefore(@Param("authorId") Long authorId, @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE t.id = :themeId ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPageByThemeId(@Param("themeId") Long themeId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE t.id = :themeId "
+            + "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) "
+            + "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostSummary> findPageByThemeIdBefore(@Param("themeId") Long themeId, @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id, Pageable pageable);
+
+    // Résumés dans l'ordre des identifiants fournis ; les articles supprimés entre-temps sont ignorés
+    default List<PostSummary> findSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, PostSummary> byId = findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(PostSummary::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     // Méthode de compatibilité pour l'ancien modèle avec plusieurs thèmes
     default List<Post> findByThemesContaining(Theme theme) {
         return findByTheme(theme);
     }
-    
+
     // Méthode de compatibilité pour l'ancien modèle avec plusieurs thèmes
     default List<Post> findByThemesInOrderByCreatedAtDesc(List<Theme> themes) {
         if (themes == null || themes.isEmpty()) {
             return findAll();
         }
-        return findByTheme(themes.get(0));
+        return findByThemeInOrderByCreatedAtDesc(themes);
     }
 }
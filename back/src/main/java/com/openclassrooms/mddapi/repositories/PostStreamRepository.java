@@ -0,0 +1,16 @@
+package com.openclassrooms.mddapi.repositories;
+
+import com.openclassrooms.mddapi.models.Post;
+
+import java.util.stream.Stream;
+
+/**
+ * Articles lus en flux pour les exports, auteur et thème chargés dans la même ligne.
+ * Le flux doit être fermé et consommé dans une transaction.
+ */
+public interface PostStreamRepository {
+
+    Stream<Post> streamByThemeId(Long themeId);
+
+    Stream<Post> streamByAuthorId(Long authorId);
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.mddapi.repositories;
+
+import com.openclassrooms.mddapi.models.Post;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.Stream;
+
+class PostStreamRepositoryImpl implements PostStreamRepository {
+
+    private static final String SELECT = "SELECT p FROM Post p JOIN FETCH p.author LEFT JOIN FETCH p.theme ";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int fetchSize;
+
+    PostStreamRepositoryImpl(@Value(StreamingQueries.FETCH_SIZE) int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public Stream<Post> streamByThemeId(Long themeId) {
+        return StreamingQueries.stream(entityManager
+                .createQuery(SELECT + "WHERE p.theme.id = :themeId ORDER BY p.id", Post.class)
+                .setParameter("themeId", themeId), fetchSize);
+    }
+
+    @Override
+    public Stream<Post> streamByAuthorId(Long authorId) {
+        return StreamingQueries.stream(entityManager
+                .createQuery(SELECT + "WHERE p.author.id = :authorId ORDER BY p.id", Post.class)
+                .setParameter("authorId", authorId), fetchSize);
+    }
+}
@@ -0,0 +1,29 @@
+package com.openclassrooms.mddapi.repositories;
+
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.TypedQuery;
+import java.util.stream.Stream;
+
+/**
+ * Lecture en flux des exports : curseur JDBC en avant seulement, entités en lecture seule, sans cache.
+ * <p>
+ * Avec MySQL, une taille de lot de {@link Integer#MIN_VALUE} fait transmettre les lignes une à une au lieu de
+ * charger tout le résultat : la connexion reste alors réservée au flux jusqu'à sa fermeture, aucune autre requête
+ * (chargement paresseux compris) ne doit être émise pendant la lecture.
+ */
+final class StreamingQueries {
+
+    static final String FETCH_SIZE = "${export.fetch-size:" + Integer.MIN_VALUE + "}";
+
+    private StreamingQueries() {
+    }
+
+    static <T> Stream<T> stream(TypedQuery<T> query, int fetchSize) {
+        return query
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_CACHEABLE, false)
+                .getResultStream();
+    }
+}
@@ -1,9 +1,17 @@
 package com.openclassrooms.mddapi.repositories;
 
 import com.openclassrooms.mddapi.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +23,49 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Méthodes pour le username
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    @Query("SELECT t.id FROM User u JOIN u.followedThemes t WHERE u.id = :userId")
+    List<Long> findFollowedThemeIdsByUserId(@Param("userId") Long userId);
+
+    // Nombre d'abonnés par thème : [themeId, count]
+    @Query("SELECT t.id, COUNT(u) FROM User u JOIN u.followedThemes t GROUP BY t.id")
+    List<Object[]> countFollowersByTheme();
+
+    @Query("SELECT u.id FROM User u")
+    List<Long> findAllIds();
+
+    // Abonnements écrits ligne à ligne sur (utilisateur_id, theme_id), sans charger l'utilisateur ni sa collection.
+    // Idempotents : renvoient 0 si l'abonnement existait déjà (ou n'existait pas)
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO abonnement (utilisateur_id, theme_id) VALUES (:userId, :themeId)", nativeQuery = true)
+    int subscribe(@Param("userId") Long userId, @Param("themeId") Long themeId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM abonnement WHERE utilisateur_id = :userId AND theme_id = :themeId", nativeQuery = true)
+    int unsubscribe(@Param("userId") Long userId, @Param("themeId") Long themeId);
+
+    // Variantes groupées : une requête par sens, quel que soit le nombre de thèmes
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO abonnement (utilisateur_id, theme_id) "
+            + "SELECT :userId, t.id FROM theme t WHERE t.id IN (:themeIds)", nativeQuery = true)
+    int subscribeAll(@Param("userId") Long userId, @Param("themeIds") Collection<Long> themeIds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM abonnement WHERE utilisateur_id = :userId AND theme_id IN (:themeIds)", nativeQuery = true)
+    int unsubscribeAll(@Param("userId") Long userId, @Param("themeIds") Collection<Long> themeIds);
+
+    // Pagination par curseur (date_inscription, id)
+    @Query("SELECT u FROM User u ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findPage(Pageable pageable);
+
+    @Query("SELECT u FROM User u WHERE u.createdAt < :createdAt OR (u.createdAt = :createdAt AND u.id < :id) "
+            + "ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findPageBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,17 @@
+package com.openclassrooms.mddapi.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injecte l'utilisateur connecté dans un paramètre de contrôleur :
+ * son identifiant ({@code Long}) ou le principal complet ({@link AuthenticatedUser}).
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -1,9 +1,11 @@
 package com.openclassrooms.mddapi.security;
 
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -13,47 +15,97 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Objects;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
+    // Seul chemin acceptant un jeton dans l'URL, pour l'EventSource du navigateur
+    private static final String EVENTS_PATH = "/api/events";
+    private static final String EVENTS_TOKEN_PARAMETER = "token";
+
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
 
         final String requestTokenHeader = request.getHeader("Authorization");
-
-        String username = null;
-        String jwtToken = null;
+        final String eventsToken = isEventStream(request) ? request.getParameter(EVENTS_TOKEN_PARAMETER) : null;
 
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
-            try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
-            } catch (Exception e) {
-                logger.warn("JWT Token problem: " + e.getMessage());
+            String jwtToken = requestTokenHeader.substring(7);
+
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Jeton déjà vu : ni vérification de signature ni accès base
+                authenticate(request, principalCache.get(jwtToken, token -> resolvePrincipal(token, null)));
+            }
+        } else if (eventsToken != null) {
+            // Jeton court, vérifié à chaque connexion : hors cache, pour ne pas être accepté ensuite en en-tête
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                authenticate(request, resolvePrincipal(eventsToken, JwtTokenUtil.SCOPE_EVENTS));
             }
         } else {
             logger.warn("JWT Token does not begin with Bearer String");
         }
+        chain.doFilter(request, response);
+    }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+    private static boolean isEventStream(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && EVENTS_PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
 
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
-                UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                usernamePasswordAuthenticationToken
-                        .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
+    private static void authenticate(HttpServletRequest request, UserDetails userDetails) {
+        if (userDetails != null) {
+            UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            usernamePasswordAuthenticationToken
+                    .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(usernamePasswordAuthenticationToken);
+        }
+    }
+
+    /**
+     * @param scope portée exigée du jeton, {@code null} pour un jeton de session
+     */
+    private UserDetails resolvePrincipal(String jwtToken, String scope) {
+        String username;
+        Number userId;
+        try {
+            Claims claims = jwtTokenUtil.getAllClaimsFromToken(jwtToken);
+            // Un jeton d'événements n'ouvre que le flux, un jeton de session ne passe pas dans l'URL
+            if (!Objects.equals(scope, claims.get(JwtTokenUtil.CLAIM_SCOPE, String.class))) {
+                return null;
             }
+            username = claims.getSubject();
+            userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        } catch (Exception e) {
+            logger.warn("JWT Token problem: " + e.getMessage());
+            return null;
+        }
+
+        try {
+            AuthenticatedUser userDetails = this.userDetailsService.loadUserByUsername(username);
+            // Le sujet du jeton a déjà été extrait : pas besoin de le décoder une seconde fois
+            if (!username.equals(userDetails.getUsername())) {
+                return null;
+            }
+            // Jeton émis pour un autre compte ayant porté le même email
+            if (userId != null && userId.longValue() != userDetails.getId()) {
+                return null;
+            }
+            return userDetails;
+        } catch (UsernameNotFoundException e) {
+            logger.warn("JWT Token problem: " + e.getMessage());
+            return null;
         }
-        chain.doFilter(request, response);
     }
 }
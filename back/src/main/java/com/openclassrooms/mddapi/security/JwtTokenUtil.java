@@ -3,10 +3,14 @@ package com.openclassrooms.mddapi.security;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -14,8 +18,21 @@ import java.util.function.Function;
 
 @Component
 public class JwtTokenUtil {
-    @Value("${jwt.secret:mddapi_secret_key_for_jwt_token_generation_and_validation_2023}")
-    private String secret;
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_SCOPE = "scope";
+    public static final String SCOPE_EVENTS = "events";
+
+    private final String secret;
+    private final Timer parseTimer;
+
+    @Autowired
+    public JwtTokenUtil(@Value("${jwt.secret:mddapi_secret_key_for_jwt_token_generation_and_validation_2023}") String secret,
+                        MeterRegistry meterRegistry) {
+        this.secret = secret;
+        this.parseTimer = Timer.builder("jwt.parse")
+                .description("Vérification de signature et lecture des claims d'un jeton")
+                .register(meterRegistry);
+    }
 
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
@@ -26,15 +43,37 @@ public class JwtTokenUtil {
         return claimsResolver.apply(claims);
     }
 
-    private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+    public Claims getAllClaimsFromToken(String token) {
+        return parseTimer.record(() -> Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody());
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof AuthenticatedUser) {
+            // L'identifiant voyage dans le jeton : les contrôleurs n'ont pas à relire l'utilisateur par email
+            claims.put(CLAIM_USER_ID, ((AuthenticatedUser) userDetails).getId());
+        }
         return doGenerateToken(claims, userDetails.getUsername());
     }
 
+    /**
+     * Jeton court réservé au flux d'événements : l'EventSource du navigateur ne sait pas envoyer d'en-tête,
+     * le jeton passe donc dans l'URL, où il peut être journalisé.
+     */
+    public String generateEventsToken(AuthenticatedUser user, Duration ttl) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_USER_ID, user.getId());
+        claims.put(CLAIM_SCOPE, SCOPE_EVENTS);
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(user.getUsername())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + ttl.toMillis()))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+    }
+
     private String doGenerateToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .setClaims(claims)
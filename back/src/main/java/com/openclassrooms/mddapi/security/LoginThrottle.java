@@ -0,0 +1,253 @@
+package com.openclassrooms.mddapi.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Limiteur de tentatives de connexion par seaux à jetons, par identifiant et par adresse IP.
+ * <p>
+ * Appelé avant toute lecture en base et tout hachage BCrypt : un appelant abusif est rejeté pour le prix
+ * d'une recherche dans une table en mémoire. Les seaux sont répartis sur des segments verrouillés
+ * indépendamment ; un seau ne coûte qu'une allocation, à la première tentative d'une clé.
+ * <p>
+ * La mémoire est bornée : chaque segment a une taille fixe et seuls les seaux de nouveau pleins en sont retirés
+ * (un seau plein équivaut à un seau absent). Un segment rempli de seaux entamés refuse les nouvelles clés
+ * plutôt que d'oublier un seau vide : une rafale d'identifiants distincts ne remet à zéro aucun compteur.
+ */
+@Component
+public class LoginThrottle {
+
+    private static final int STRIPES = 64;
+
+    public enum Decision {
+        ALLOWED, REJECTED_IDENTIFIER, REJECTED_IP
+    }
+
+    /**
+     * Résultat d'une tentative : décision et délai d'attente conseillé en cas de refus.
+     */
+    public static final class Result {
+        private static final Result ALLOWED = new Result(Decision.ALLOWED, 0);
+
+        private final Decision decision;
+        private final long retryAfterSeconds;
+
+        private Result(Decision decision, long retryAfterSeconds) {
+            this.decision = decision;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public boolean isAllowed() {
+            return decision == Decision.ALLOWED;
+        }
+
+        public Decision getDecision() {
+            return decision;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final boolean enabled;
+    private final BucketTable byIdentifier;
+    private final BucketTable byIp;
+
+    private final Counter allowed;
+    private final Counter rejectedIdentifier;
+    private final Counter rejectedIp;
+
+    @Autowired
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${security.login-throttle.enabled:true}") boolean enabled,
+                         @Value("${security.login-throttle.identifier.capacity:5}") int identifierCapacity,
+                         @Value("${security.login-throttle.identifier.refill-period:1m}") Duration identifierRefill,
+                         @Value("${security.login-throttle.ip.capacity:20}") int ipCapacity,
+                         @Value("${security.login-throttle.ip.refill-period:1m}") Duration ipRefill,
+                         @Value("${security.login-throttle.max-entries:100000}") int maxEntries) {
+        this.enabled = enabled;
+        this.byIdentifier = new BucketTable(identifierCapacity, identifierRefill, maxEntries);
+        this.byIp = new BucketTable(ipCapacity, ipRefill, maxEntries);
+
+        this.allowed = decisionCounter(meterRegistry, "allowed");
+        this.rejectedIdentifier = decisionCounter(meterRegistry, "rejected_identifier");
+        this.rejectedIp = decisionCounter(meterRegistry, "rejected_ip");
+        Gauge.builder("auth.login.throttle.entries", byIdentifier, BucketTable::size).tag("key", "identifier").register(meterRegistry);
+        Gauge.builder("auth.login.throttle.entries", byIp, BucketTable::size).tag("key", "ip").register(meterRegistry);
+        FunctionCounter.builder("auth.login.throttle.evictions", byIdentifier, BucketTable::evictions).tag("key", "identifier").register(meterRegistry);
+        FunctionCounter.builder("auth.login.throttle.evictions", byIp, BucketTable::evictions).tag("key", "ip").register(meterRegistry);
+        FunctionCounter.builder("auth.login.throttle.overflows", byIdentifier, BucketTable::overflows).tag("key", "identifier").register(meterRegistry);
+        FunctionCounter.builder("auth.login.throttle.overflows", byIp, BucketTable::overflows).tag("key", "ip").register(meterRegistry);
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("auth.login.throttle").tag("decision", decision).register(meterRegistry);
+    }
+
+    /**
+     * Consomme un jeton pour l'adresse IP puis, si elle est admise, un pour l'identifiant.
+     * Une adresse refusée ne crée aucun seau d'identifiant : des identifiants aléatoires envoyés depuis une
+     * adresse épuisée ne peuvent pas remplir la table des identifiants.
+     */
+    public Result tryAcquire(String identifier, String ip) {
+        if (!enabled) {
+            return Result.ALLOWED;
+        }
+        long now = System.nanoTime();
+        String identifierKey = identifier == null ? "" : identifier.trim().toLowerCase(Locale.ROOT);
+
+        long ipWait = byIp.tryAcquire(ip == null ? "" : ip, now);
+        if (ipWait > 0) {
+            rejectedIp.increment();
+            return new Result(Decision.REJECTED_IP, toRetryAfterSeconds(ipWait));
+        }
+        long identifierWait = byIdentifier.tryAcquire(identifierKey, now);
+        if (identifierWait > 0) {
+            rejectedIdentifier.increment();
+            return new Result(Decision.REJECTED_IDENTIFIER, toRetryAfterSeconds(identifierWait));
+        }
+        allowed.increment();
+        return Result.ALLOWED;
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    /**
+     * Seau à jetons : champs primitifs modifiés sous le verrou de son segment.
+     */
+    private static final class Bucket {
+        double tokens;
+        long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private static final class BucketTable {
+        private final int capacity;
+        private final double tokensPerNano;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        BucketTable(int capacity, Duration refillPeriod, int maxEntries) {
+            this.capacity = capacity;
+            // refill-period : durée pour regagner la totalité des jetons
+            this.tokensPerNano = (double) capacity / refillPeriod.toNanos();
+            int maxPerStripe = Math.max(1, maxEntries / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(maxPerStripe);
+            }
+        }
+
+        /**
+         * Consomme un jeton ; renvoie 0 si accordé, sinon le délai en nanosecondes avant le prochain jeton.
+         */
+        long tryAcquire(String key, long now) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.evictRefilled(this, now);
+                Bucket bucket = stripe.get(key);
+                if (bucket == null) {
+                    if (stripe.size() >= stripe.maxEntries) {
+                        // Segment plein de seaux entamés : la nouvelle clé attend qu'une place se libère
+                        stripe.overflows++;
+                        return refillDelay(stripe.values().iterator().next(), now);
+                    }
+                    stripe.put(key, new Bucket(capacity - 1, now));
+                    return 0;
+                }
+                bucket.tokens = tokensAt(bucket, now);
+                bucket.updatedAt = now;
+                if (bucket.tokens >= 1) {
+                    bucket.tokens -= 1;
+                    return 0;
+                }
+                return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+            }
+        }
+
+        double tokensAt(Bucket bucket, long now) {
+            return Math.min(capacity, bucket.tokens + (now - bucket.updatedAt) * tokensPerNano);
+        }
+
+        // Délai avant que le seau soit de nouveau plein, donc retirable
+        private long refillDelay(Bucket bucket, long now) {
+            return Math.max(1, (long) Math.ceil((capacity - tokensAt(bucket, now)) / tokensPerNano));
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        long evictions() {
+            long evictions = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    evictions += stripe.evictions;
+                }
+            }
+            return evictions;
+        }
+
+        long overflows() {
+            long overflows = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    overflows += stripe.overflows;
+                }
+            }
+            return overflows;
+        }
+
+        private Stripe stripeFor(String key) {
+            int hash = key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+    }
+
+    /**
+     * Segment de la table en ordre d'accès : l'entrée en tête est la moins récemment utilisée.
+     */
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        private final int maxEntries;
+        long evictions;
+        long overflows;
+
+        Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        // Retire en tête les seaux redevenus pleins : coût amorti, sans tâche de fond
+        void evictRefilled(BucketTable table, long now) {
+            Iterator<Bucket> iterator = values().iterator();
+            while (iterator.hasNext()) {
+                if (table.tokensAt(iterator.next(), now) < table.capacity) {
+                    return;
+                }
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.openclassrooms.mddapi.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Traduit la saturation du pool de hachage en 503 avec {@code Retry-After},
+ * quel que soit l'endpoint (connexion, inscription, changement de mot de passe).
+ */
+@RestControllerAdvice
+public class PasswordHashingExceptionHandler {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handleRejected(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body("Service momentanément surchargé, veuillez réessayer");
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.mddapi.security;
+
+/**
+ * Levée lorsque le pool de hachage des mots de passe est saturé : la requête doit être
+ * rejetée immédiatement (503) plutôt que d'attendre.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
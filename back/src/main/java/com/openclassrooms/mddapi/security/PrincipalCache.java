@@ -0,0 +1,53 @@
+package com.openclassrooms.mddapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Cache borné jeton JWT → utilisateur authentifié.
+ * <p>
+ * Évite de re-vérifier la signature et de recharger l'utilisateur en base à chaque requête.
+ * Les entrées expirent après un délai fixe et sont invalidées lorsque l'utilisateur est modifié ou supprimé.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    @Autowired
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Compteurs cache.gets{result=hit|miss}, cache.evictions...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principals");
+    }
+
+    /**
+     * Retourne l'utilisateur associé au jeton, en le résolvant via {@code loader} au premier accès.
+     * Un {@code null} renvoyé par le loader (jeton invalide) n'est pas mis en cache.
+     */
+    public UserDetails get(String token, Function<String, UserDetails> loader) {
+        return cache.get(token, loader);
+    }
+
+    /**
+     * Invalide tous les jetons d'un utilisateur (identifié par son email).
+     */
+    public void invalidateUser(String email) {
+        cache.asMap().values().removeIf(userDetails -> userDetails.getUsername().equals(email));
+    }
+}
@@ -2,38 +2,64 @@ package com.openclassrooms.mddapi.security;
 
 import com.openclassrooms.mddapi.models.User;
 import com.openclassrooms.mddapi.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Optional;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final Timer loadTimer;
 
     @Autowired
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
+        this.loadTimer = Timer.builder("auth.user.load")
+                .description("Chargement de l'utilisateur par email ou username")
+                .register(meterRegistry);
     }
 
     @Override
-    public UserDetails loadUserByUsername(String identifier) throws UsernameNotFoundException {
-        // identifier peut être un email ou un username
-        Optional<User> userByEmail = userRepository.findByEmail(identifier);
-        Optional<User> userByUsername = userRepository.findByUsername(identifier);
-        
-        User user = userByEmail.orElseGet(() -> 
-                    userByUsername.orElseThrow(() -> 
-                        new UsernameNotFoundException("Utilisateur non trouvé avec l'identifiant: " + identifier)));
-
-        return new org.springframework.security.core.userdetails.User(
+    public AuthenticatedUser loadUserByUsername(String identifier) throws UsernameNotFoundException {
+        return loadTimer.record(() -> load(identifier));
+    }
+
+    private AuthenticatedUser load(String identifier) {
+        // identifier peut être un email ou un username ; le username n'est cherché que si l'email ne correspond pas
+        User user = userRepository.findByEmail(identifier)
+                .or(() -> userRepository.findByUsername(identifier))
+                .orElseThrow(() ->
+                        new UsernameNotFoundException("Utilisateur non trouvé avec l'identifiant: " + identifier));
+
+        return new AuthenticatedUser(
+                user.getId(),
                 user.getEmail(),  // Toujours utiliser l'email comme identifiant principal
                 user.getPassword(),
                 new ArrayList<>());
     }
+
+    /**
+     * Appelée après une connexion réussie lorsque le hachage stocké n'utilise pas le coût BCrypt configuré.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        AuthenticatedUser authenticatedUser = (AuthenticatedUser) userDetails;
+        userRepository.findById(authenticatedUser.getId()).ifPresent(user -> {
+            user.setPassword(newPassword);
+            userRepository.save(user);
+        });
+        return new AuthenticatedUser(
+                authenticatedUser.getId(),
+                authenticatedUser.getUsername(),
+                newPassword,
+                new ArrayList<>(authenticatedUser.getAuthorities()));
+    }
 }
@@ -0,0 +1,192 @@
+package com.openclassrooms.mddapi.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.models.Comment;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.models.User;
+import com.openclassrooms.mddapi.repositories.CommentRepository;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exports NDJSON (un objet JSON par ligne, champ {@code type}) écrits directement dans le flux de sortie.
+ * <p>
+ * Les lignes sont lues par curseur ({@link PostRepository#streamByThemeId(Long)} etc.) et le contexte de persistance
+ * est vidé à chaque envoi au client, auteurs et thèmes chargés avec les lignes compris : la mémoire utilisée ne
+ * dépend pas du nombre de lignes exportées. Les articles
+ * sont écrits avant les commentaires, un seul curseur étant ouvert à la fois sur la connexion.
+ */
+@Service
+public class DataExportService {
+
+    // Lignes écrites entre deux envois au client (et deux vidages du contexte de persistance)
+    private static final int FLUSH_EVERY = 500;
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final ObjectMapper objectMapper;
+    private final Counter exportedRows;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public DataExportService(PostRepository postRepository, CommentRepository commentRepository,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.objectMapper = objectMapper;
+        this.exportedRows = Counter.builder("export.rows").register(meterRegistry);
+    }
+
+    /**
+     * Thème, puis ses articles, puis leurs commentaires.
+     *
+     * @return nombre de lignes écrites
+     */
+    @Transactional(readOnly = true)
+    public long exportTheme(Theme theme, OutputStream out) throws IOException {
+        try (NdjsonWriter writer = new NdjsonWriter(out)) {
+            writer.theme(theme);
+            try (Stream<Post> posts = postRepository.streamByThemeId(theme.getId())) {
+                writer.posts(posts);
+            }
+            try (Stream<Comment> comments = commentRepository.streamByThemeId(theme.getId())) {
+                writer.comments(comments);
+            }
+            return writer.lines;
+        }
+    }
+
+    /**
+     * Données d'un utilisateur : profil, abonnements, articles et commentaires.
+     *
+     * @return nombre de lignes écrites
+     */
+    @Transactional(readOnly = true)
+    public long exportUser(User user, OutputStream out) throws IOException {
+        try (NdjsonWriter writer = new NdjsonWriter(out)) {
+            writer.user(user);
+            // Abonnements lus avant l'ouverture des curseurs
+            for (Theme theme : user.getFollowedThemes()) {
+                writer.subscription(theme);
+            }
+            try (Stream<Post> posts = postRepository.streamByAuthorId(user.getId())) {
+                writer.posts(posts);
+            }
+            try (Stream<Comment> comments = commentRepository.streamByAuthorId(user.getId())) {
+                writer.comments(comments);
+            }
+            return writer.lines;
+        }
+    }
+
+    private final class NdjsonWriter implements AutoCloseable {
+        private final JsonGenerator generator;
+        private long lines;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            // Le flux de la réponse reste géré par le conteneur
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Séparateur écrit par endLine() : pas d'espace entre les objets racine
+            generator.setRootValueSeparator(null);
+        }
+
+        void theme(Theme theme) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "theme");
+            generator.writeNumberField("id", theme.getId());
+            generator.writeStringField("name", theme.getName());
+            generator.writeStringField("description", theme.getDescription());
+            endLine();
+        }
+
+        void user(User user) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "user");
+            generator.writeNumberField("id", user.getId());
+            generator.writeStringField("username", user.getUsername());
+            generator.writeStringField("email", user.getEmail());
+            generator.writeObjectField("createdAt", user.getCreatedAt());
+            endLine();
+        }
+
+        void subscription(Theme theme) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "subscription");
+            generator.writeNumberField("themeId", theme.getId());
+            generator.writeStringField("themeName", theme.getName());
+            endLine();
+        }
+
+        void posts(Stream<Post> posts) throws IOException {
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                Post post = iterator.next();
+                generator.writeStartObject();
+                generator.writeStringField("type", "post");
+                generator.writeNumberField("id", post.getId());
+                generator.writeStringField("title", post.getTitle());
+                generator.writeStringField("content", post.getContent());
+                generator.writeObjectField("createdAt", post.getCreatedAt());
+                generator.writeObjectField("updatedAt", post.getUpdatedAt());
+                generator.writeNumberField("authorId", post.getAuthor().getId());
+                generator.writeStringField("authorUsername", post.getAuthor().getUsername());
+                if (post.getTheme() != null) {
+                    generator.writeNumberField("themeId", post.getTheme().getId());
+                    generator.writeStringField("themeName", post.getTheme().getName());
+                }
+                generator.writeNumberField("commentCount", post.getCommentCount());
+                endLine();
+            }
+        }
+
+        void comments(Stream<Comment> comments) throws IOException {
+            Iterator<Comment> iterator = comments.iterator();
+            while (iterator.hasNext()) {
+                Comment comment = iterator.next();
+                generator.writeStartObject();
+                generator.writeStringField("type", "comment");
+                generator.writeNumberField("id", comment.getId());
+                generator.writeNumberField("postId", comment.getPost().getId());
+                generator.writeStringField("content", comment.getContent());
+                generator.writeObjectField("createdAt", comment.getCreatedAt());
+                generator.writeObjectField("updatedAt", comment.getUpdatedAt());
+                generator.writeNumberField("authorId", comment.getAuthor().getId());
+                generator.writeStringField("authorUsername", comment.getAuthor().getUsername());
+                endLine();
+            }
+        }
+
+        private void endLine() throws IOException {
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            lines++;
+            exportedRows.increment();
+            if (lines % FLUSH_EVERY == 0) {
+                generator.flush();
+                // Le curseur reste ouvert : seules les entités déjà écrites sont libérées
+                entityManager.clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.openclassrooms.mddapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.mddapi.dto.CommentEvent;
+import com.openclassrooms.mddapi.dto.PostSummary;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diffusion en direct (Server-Sent Events) des nouveaux articles des thèmes suivis et des nouveaux
+ * commentaires de l'article consulté.
+ * <p>
+ * Les connexions sont rangées par thème et par article : une publication ne parcourt que les connexions
+ * concernées. Chaque événement est sérialisé une seule fois puis déposé dans la file bornée de chaque
+ * connexion, sans jamais bloquer l'écriture qui le publie ; l'envoi est fait par un pool dédié. Une connexion
+ * dont la file est pleine (client trop lent) est fermée : le client se reconnecte. Un battement périodique
+ * garde les connexions ouvertes à travers les proxys et détecte les clients partis.
+ * <p>
+ * L'écriture vers un client qui ne lit plus bloque jusqu'au délai d'écriture du conteneur. Une connexion dont
+ * l'envoi dépasse {@code events.send-timeout} est donc fermée, et le pool reçoit un thread de renfort tant que
+ * l'envoi reste bloqué : quelques clients figés n'immobilisent pas les envois des autres. Les renforts sont
+ * plafonnés ({@code events.max-spare-senders}) : au-delà, la connexion est fermée sans thread supplémentaire.
+ */
+@Service
+public class LiveEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveEventHub.class);
+
+    private static final Event HEARTBEAT = new Event(null, null, null);
+    private static final long IDLE = Long.MIN_VALUE;
+
+    private final SubscriptionIndex subscriptionIndex;
+    private final ObjectMapper objectMapper;
+    private final int maxConnections;
+    private final int bufferSize;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+    private final Duration sendTimeout;
+    private final int maxSpareSenders;
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService heartbeat;
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Map<Long, Set<Connection>> byTheme = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Connection>> byPost = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Connection>> byUser = new ConcurrentHashMap<>();
+    // Connexions en cours d'envoi, fermées ou non : un client lent fermé peut encore bloquer son thread
+    private final Set<Connection> sending = ConcurrentHashMap.newKeySet();
+    // Threads de renfort en cours, gardé par le moniteur du pool
+    private int spareSenders;
+
+    private final Counter sent;
+    private final Counter rejected;
+    private final Counter droppedSlow;
+    private final Counter droppedError;
+    private final Counter droppedTimeout;
+
+    @Autowired
+    public LiveEventHub(SubscriptionIndex subscriptionIndex, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                        @Value("${events.max-connections:1000}") int maxConnections,
+                        @Value("${events.buffer-size:64}") int bufferSize,
+                        @Value("${events.heartbeat-interval:20s}") Duration heartbeatInterval,
+                        @Value("${events.timeout:30m}") Duration timeout,
+                        @Value("${events.send-timeout:10s}") Duration sendTimeout,
+                        @Value("${events.sender-threads:4}") int senderThreads,
+                        @Value("${events.max-spare-senders:4}") int maxSpareSenders) {
+        this.subscriptionIndex = subscriptionIndex;
+        this.objectMapper = objectMapper;
+        this.maxConnections = maxConnections;
+        this.bufferSize = bufferSize;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+        this.sendTimeout = sendTimeout;
+        this.maxSpareSenders = maxSpareSenders;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "events-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("events.connections", connectionCount, AtomicInteger::get).register(meterRegistry);
+        this.sent = Counter.builder("events.sent").register(meterRegistry);
+        this.rejected = Counter.builder("events.rejected").register(meterRegistry);
+        this.droppedSlow = Counter.builder("events.dropped").tag("reason", "slow").register(meterRegistry);
+        this.droppedError = Counter.builder("events.dropped").tag("reason", "error").register(meterRegistry);
+        this.droppedTimeout = Counter.builder("events.dropped").tag("reason", "timeout").register(meterRegistry);
+        Gauge.builder("events.sender.threads", sender, ThreadPoolExecutor::getCorePoolSize).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long intervalMillis = heartbeatInterval.toMillis();
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        long checkMillis = Math.max(sendTimeout.toMillis() / 2, 1);
+        heartbeat.scheduleWithFixedDelay(this::checkSendDeadlines, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (Set<Connection> connections : byUser.values()) {
+            for (Connection connection : connections) {
+                connection.close(null);
+            }
+        }
+        sender.shutdownNow();
+    }
+
+    /**
+     * Ouvre un flux pour l'utilisateur, avec les commentaires de {@code postId} s'il est renseigné.
+     *
+     * @return {@code null} si le nombre maximal de connexions est atteint
+     */
+    public SseEmitter connect(Long userId, Long postId) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            rejected.increment();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Connection connection = new Connection(userId, postId, emitter);
+        emitter.onCompletion(() -> connection.close(null));
+        emitter.onTimeout(() -> connection.close(null));
+        emitter.onError(error -> connection.close(null));
+
+        register(byUser, userId, connection);
+        if (postId != null) {
+            register(byPost, postId, connection);
+        }
+        connection.followThemes(subscriptionIndex.getFollowedThemeIds(userId));
+        // Premier battement immédiat : les en-têtes partent sans attendre le premier événement
+        connection.enqueue(HEARTBEAT);
+        return emitter;
+    }
+
+    /**
+     * Pousse un nouvel article aux connexions abonnées à son thème.
+     */
+    public void publishPost(PostSummary post) {
+        Set<Connection> connections = byTheme.get(post.getThemeId());
+        if (connections == null || connections.isEmpty()) {
+            return;
+        }
+        Event event = event("post", post.getId(), post);
+        if (event != null) {
+            connections.forEach(connection -> connection.enqueue(event));
+        }
+    }
+
+    /**
+     * Pousse un nouveau commentaire aux connexions qui consultent son article.
+     */
+    public void publishComment(CommentEvent comment) {
+        Set<Connection> connections = byPost.get(comment.getPostId());
+        if (connections == null || connections.isEmpty()) {
+            return;
+        }
+        Event event = event("comment", comment.getId(), comment);
+        if (event != null) {
+            connections.forEach(connection -> connection.enqueue(event));
+        }
+    }
+
+    /**
+     * À appeler après un changement d'abonnements : les connexions ouvertes suivent les nouveaux thèmes.
+     */
+    public void refreshSubscriptions(Long userId) {
+        Set<Connection> connections = byUser.get(userId);
+        if (connections == null || connections.isEmpty()) {
+            return;
+        }
+        Set<Long> themeIds = subscriptionIndex.getFollowedThemeIds(userId);
+        connections.forEach(connection -> connection.followThemes(themeIds));
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void sendHeartbeats() {
+        for (Set<Connection> connections : byUser.values()) {
+            connections.forEach(connection -> connection.enqueue(HEARTBEAT));
+        }
+    }
+
+    private void checkSendDeadlines() {
+        long now = System.nanoTime();
+        long limit = sendTimeout.toNanos();
+        sending.forEach(connection -> connection.checkSendDeadline(now, limit));
+    }
+
+    // Le maximum est relevé avant le cœur et abaissé après : le pool refuse un cœur supérieur au maximum.
+    // false au plafond des renforts : le pool garde sa taille
+    private boolean addSpareSender() {
+        synchronized (sender) {
+            if (spareSenders >= maxSpareSenders) {
+                return false;
+            }
+            spareSenders++;
+            sender.setMaximumPoolSize(sender.getMaximumPoolSize() + 1);
+            sender.setCorePoolSize(sender.getCorePoolSize() + 1);
+            return true;
+        }
+    }
+
+    private void releaseSpareSender() {
+        synchronized (sender) {
+            spareSenders--;
+            sender.setCorePoolSize(sender.getCorePoolSize() - 1);
+            sender.setMaximumPoolSize(sender.getMaximumPoolSize() - 1);
+        }
+    }
+
+    // Sérialisé une fois pour toutes les connexions
+    private Event event(String name, Long id, Object payload) {
+        try {
+            return new Event(name, id == null ? null : id.toString(), objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            log.warn("Événement {} {} non sérialisable : {}", name, id, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void register(Map<Long, Set<Connection>> index, Long key, Connection connection) {
+        index.compute(key, (k, connections) -> {
+            Set<Connection> result = connections != null ? connections : ConcurrentHashMap.newKeySet();
+            result.add(connection);
+            return result;
+        });
+    }
+
+    // Ensemble vide retiré dans la même opération atomique que le retrait de la connexion
+    private static void unregister(Map<Long, Set<Connection>> index, Long key, Connection connection) {
+        index.computeIfPresent(key, (k, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    private static final class Event {
+        private final String name;
+        private final String id;
+        private final String data;
+
+        Event(String name, String id, String data) {
+            this.name = name;
+            this.id = id;
+            this.data = data;
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (data == null) {
+                return SseEmitter.event().comment("");
+            }
+            return SseEmitter.event().name(name).id(id).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Connection {
+        private final Long userId;
+        private final Long postId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Set<Long> themeIds = Collections.emptySet();
+        // Début de l'envoi en cours (System.nanoTime), IDLE hors envoi
+        private volatile long sendStartedAt = IDLE;
+        // Envoi en retard, et compensé par un thread de renfort ; gardés par le moniteur de la connexion
+        private boolean overdue;
+        private boolean spare;
+
+        Connection(Long userId, Long postId, SseEmitter emitter) {
+            this.userId = userId;
+            this.postId = postId;
+            this.emitter = emitter;
+        }
+
+        synchronized void followThemes(Set<Long> followed) {
+            if (closed.get()) {
+                return;
+            }
+            for (Long themeId : themeIds) {
+                if (!followed.contains(themeId)) {
+                    unregister(byTheme, themeId, this);
+                }
+            }
+            for (Long themeId : followed) {
+                if (!themeIds.contains(themeId)) {
+                    register(byTheme, themeId, this);
+                }
+            }
+            themeIds = followed;
+        }
+
+        void enqueue(Event event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                // Client trop lent : fermé plutôt que de laisser grossir sa file
+                close(droppedSlow);
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            sending.add(this);
+            try {
+                Event event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    sendStartedAt = System.nanoTime();
+                    emitter.send(event.toSse());
+                    sendStartedAt = IDLE;
+                    if (event != HEARTBEAT) {
+                        sent.increment();
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client parti ou flux déjà terminé
+                close(droppedError);
+            } finally {
+                sending.remove(this);
+                boolean releaseSpare;
+                synchronized (this) {
+                    sendStartedAt = IDLE;
+                    releaseSpare = spare;
+                    overdue = false;
+                    spare = false;
+                }
+                if (releaseSpare) {
+                    releaseSpareSender();
+                }
+                draining.set(false);
+                if (closed.get()) {
+                    // Fermée pendant l'envoi : close() a laissé la fin du flux à ce thread
+                    complete();
+                } else if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                    // Événement déposé entre le dernier poll et la libération du drapeau
+                    sender.execute(this::drain);
+                }
+            }
+        }
+
+        void checkSendDeadline(long now, long limit) {
+            synchronized (this) {
+                long started = sendStartedAt;
+                if (overdue || started == IDLE || now - started <= limit) {
+                    return;
+                }
+                overdue = true;
+                // Le thread bloqué ne sera rendu qu'à l'échec de l'écriture par le conteneur ; renfort accordé
+                // sous le moniteur pour que la fin de l'envoi sache s'il faut le rendre
+                spare = addSpareSender();
+                if (!spare) {
+                    log.warn("Plafond de {} threads de renfort atteint : connexion de l'utilisateur {} fermée sans renfort",
+                            maxSpareSenders, userId);
+                }
+            }
+            close(droppedTimeout);
+        }
+
+        void close(Counter reason) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (reason != null) {
+                reason.increment();
+            }
+            synchronized (this) {
+                for (Long themeId : themeIds) {
+                    unregister(byTheme, themeId, this);
+                }
+            }
+            if (postId != null) {
+                unregister(byPost, postId, this);
+            }
+            unregister(byUser, userId, this);
+            queue.clear();
+            connectionCount.decrementAndGet();
+            // complete() attendrait la fin d'un envoi en cours vers un client lent : c'est alors drain() qui termine
+            if (!draining.get()) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // Déjà terminé
+            }
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.dto.PostDocument;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Index inversé en mémoire sur le titre et le contenu des articles.
+ * <p>
+ * L'index est tenu à jour à chaque création, modification ou suppression d'article et peut être
+ * reconstruit depuis la base par tranches d'identifiants lues en parallèle. Une recherche renvoie
+ * les articles contenant tous les termes de la requête, classés selon BM25 (les termes du titre
+ * comptent triple), avec le nombre de résultats par thème et par auteur.
+ */
+@Service
+public class PostSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    public static final int MAX_RESULT_WINDOW = 1000;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_QUERY_TERMS = 10;
+    private static final int MAX_FACETS = 20;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    // Mots vides comparés après suppression des accents
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "le", "la", "les", "un", "une", "des", "du", "de", "et", "ou", "en", "au", "aux", "ce", "ces",
+            "est", "pour", "par", "sur", "dans", "que", "qui", "ne", "pas", "se", "sa", "son", "ses",
+            "il", "elle", "on", "nous", "vous", "ils", "avec", "plus",
+            "the", "and", "or", "of", "to", "in", "is", "it", "for", "an", "with", "as", "at", "be", "this"));
+
+    private final PostRepository postRepository;
+    private final boolean enabled;
+    private final boolean rebuildOnStartup;
+    private final int batchSize;
+    private final int threads;
+    private final Timer searchTimer;
+    private final Timer rebuildTimer;
+
+    // Sérialise les écritures et la bascule vers un index reconstruit
+    private final Object writeLock = new Object();
+    private volatile Index index = new Index();
+    // Non nul pendant une reconstruction : écritures à rejouer sur le nouvel index avant la bascule
+    private List<Consumer<Index>> pendingWrites;
+
+    @Autowired
+    public PostSearchIndex(PostRepository postRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${search.index.enabled:true}") boolean enabled,
+                           @Value("${search.index.rebuild-on-startup:true}") boolean rebuildOnStartup,
+                           @Value("${search.index.batch-size:1000}") int batchSize,
+                           @Value("${search.index.threads:4}") int threads) {
+        this.postRepository = postRepository;
+        this.enabled = enabled;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.searchTimer = Timer.builder("posts.search")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("posts.search.rebuild").register(meterRegistry);
+        Gauge.builder("posts.search.documents", this, search -> search.index.documentCount()).register(meterRegistry);
+        Gauge.builder("posts.search.terms", this, search -> search.index.termCount()).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (enabled && rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Indexe un article créé ou modifié (remplace la version précédente).
+     */
+    public void index(Post post) {
+        if (!enabled) {
+            return;
+        }
+        Document document = Document.of(post.getId(), post.getTitle(), post.getContent(),
+                post.getTheme() != null ? post.getTheme().getId() : null,
+                post.getAuthor() != null ? post.getAuthor().getId() : null);
+        apply(target -> target.put(document));
+    }
+
+    public void remove(Long postId) {
+        if (enabled) {
+            apply(target -> target.remove(postId));
+        }
+    }
+
+    /**
+     * Retire des articles supprimés en masse (suppression en cascade avec le compte de leur auteur).
+     */
+    public void removeAll(Collection<Long> postIds) {
+        if (enabled && !postIds.isEmpty()) {
+            List<Long> ids = new ArrayList<>(postIds);
+            apply(target -> ids.forEach(target::remove));
+        }
+    }
+
+    /**
+     * Articles correspondant à la requête, du plus pertinent au moins pertinent.
+     * Les facettes sont calculées avant application des filtres thème et auteur.
+     */
+    public Hits search(String query, Long themeId, Long authorId, int offset, int limit) {
+        return searchTimer.record(() -> {
+            List<String> terms = tokenize(query).stream()
+                    .distinct()
+                    .limit(MAX_QUERY_TERMS)
+                    .collect(Collectors.toList());
+            if (terms.isEmpty()) {
+                return Hits.EMPTY;
+            }
+            return index.search(terms, themeId, authorId, offset, limit);
+        });
+    }
+
+    /**
+     * Reconstruit l'index depuis la base puis bascule dessus ; les recherches continuent
+     * sur l'ancien index pendant la reconstruction.
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            if (pendingWrites != null) {
+                throw new IllegalStateException("Reconstruction de l'index de recherche déjà en cours");
+            }
+            pendingWrites = new ArrayList<>();
+        }
+
+        long start = System.nanoTime();
+        Index rebuilt = new Index();
+        boolean complete = false;
+        try {
+            load(rebuilt);
+            complete = true;
+        } finally {
+            synchronized (writeLock) {
+                if (complete) {
+                    pendingWrites.forEach(write -> write.accept(rebuilt));
+                    index = rebuilt;
+                }
+                pendingWrites = null;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Index de recherche reconstruit en {} ms ({} articles, {} termes)",
+                TimeUnit.NANOSECONDS.toMillis(elapsed), rebuilt.documentCount(), rebuilt.termCount());
+    }
+
+    private void apply(Consumer<Index> write) {
+        synchronized (writeLock) {
+            write.accept(index);
+            if (pendingWrites != null) {
+                pendingWrites.add(write);
+            }
+        }
+    }
+
+    private void load(Index target) {
+        long maxId = postRepository.findMaxId();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Lecture et découpage en parallèle, insertion dans l'ordre des tranches :
+            // les listes de postings restent triées par simple ajout en fin
+            Deque<Future<List<Document>>> inFlight = new ArrayDeque<>();
+            long next = 0;
+            while (next < maxId || !inFlight.isEmpty()) {
+                while (next < maxId && inFlight.size() < threads * 2) {
+                    long after = next;
+                    long upTo = Math.min(after + batchSize, maxId);
+                    inFlight.add(executor.submit(() -> loadBatch(after, upTo)));
+                    next = upTo;
+                }
+                for (Document document : inFlight.poll().get()) {
+                    target.put(document);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstruction de l'index de recherche interrompue", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Échec de la reconstruction de l'index de recherche", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Document> loadBatch(long after, long upTo) {
+        List<PostDocument> rows = postRepository.findDocumentsByIdRange(after, upTo);
+        List<Document> documents = new ArrayList<>(rows.size());
+        for (PostDocument row : rows) {
+            documents.add(Document.of(row.getId(), row.getTitle(), row.getContent(), row.getThemeId(), row.getAuthorId()));
+        }
+        return documents;
+    }
+
+    /**
+     * Découpe un texte en termes : minuscules, sans accents, sans mots vides ni termes d'une lettre.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> terms = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (token.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(token)) {
+                terms.add(token);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Résultat d'une recherche : identifiants de la page demandée, nombre total et facettes.
+     */
+    public static final class Hits {
+        static final Hits EMPTY = new Hits(Collections.emptyList(), 0, Collections.emptyMap(), Collections.emptyMap());
+
+        private final List<Long> postIds;
+        private final int total;
+        private final Map<Long, Integer> themeFacets;
+        private final Map<Long, Integer> authorFacets;
+
+        Hits(List<Long> postIds, int total, Map<Long, Integer> themeFacets, Map<Long, Integer> authorFacets) {
+            this.postIds = postIds;
+            this.total = total;
+            this.themeFacets = themeFacets;
+            this.authorFacets = authorFacets;
+        }
+
+        public List<Long> getPostIds() {
+            return postIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public Map<Long, Integer> getThemeFacets() {
+            return themeFacets;
+        }
+
+        public Map<Long, Integer> getAuthorFacets() {
+            return authorFacets;
+        }
+    }
+
+    /**
+     * Article indexé : termes distincts, fréquences pondérées et longueur, conservés pour le score
+     * et pour retirer l'article des postings lors d'une mise à jour.
+     */
+    private static final class Document {
+        final long id;
+        final Long themeId;
+        final Long authorId;
+        final String[] terms;
+        final int[] frequencies;
+        final int length;
+
+        private Document(long id, Long themeId, Long authorId, String[] terms, int[] frequencies, int length) {
+            this.id = id;
+            this.themeId = themeId;
+            this.authorId = authorId;
+            this.terms = terms;
+            this.frequencies = frequencies;
+            this.length = length;
+        }
+
+        static Document of(Long id, String title, String content, Long themeId, Long authorId) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (String term : tokenize(title)) {
+                counts.merge(term, TITLE_WEIGHT, Integer::sum);
+            }
+            for (String term : tokenize(content)) {
+                counts.merge(term, 1, Integer::sum);
+            }
+            String[] terms = new String[counts.size()];
+            int[] frequencies = new int[counts.size()];
+            int length = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                terms[i] = entry.getKey();
+                frequencies[i] = entry.getValue();
+                length += entry.getValue();
+                i++;
+            }
+            return new Document(id, themeId, authorId, terms, frequencies, length);
+        }
+    }
+
+    /**
+     * Liste triée (identifiant d'article, fréquence) d'un terme, en tableaux primitifs.
+     */
+    private static final class Postings {
+        long[] postIds = new long[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void put(long postId, int frequency) {
+            int i = Arrays.binarySearch(postIds, 0, size, postId);
+            if (i >= 0) {
+                frequencies[i] = frequency;
+                return;
+            }
+            i = -i - 1;
+            if (size == postIds.length) {
+                postIds = Arrays.copyOf(postIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(postIds, i, postIds, i + 1, size - i);
+            System.arraycopy(frequencies, i, frequencies, i + 1, size - i);
+            postIds[i] = postId;
+            frequencies[i] = frequency;
+            size++;
+        }
+
+        /**
+         * Retire l'article et indique si la liste est désormais vide.
+         */
+        boolean remove(long postId) {
+            int i = Arrays.binarySearch(postIds, 0, size, postId);
+            if (i >= 0) {
+                System.arraycopy(postIds, i + 1, postIds, i, size - i - 1);
+                System.arraycopy(frequencies, i + 1, frequencies, i, size - i - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        int frequency(long postId) {
+            int i = Arrays.binarySearch(postIds, 0, size, postId);
+            return i >= 0 ? frequencies[i] : 0;
+        }
+    }
+
+    private static final class ScoredPost {
+        final long postId;
+        final double score;
+
+        ScoredPost(long postId, double score) {
+            this.postId = postId;
+            this.score = score;
+        }
+    }
+
+    // À score égal, l'article le plus récent (identifiant le plus grand) passe devant
+    private static final Comparator<ScoredPost> RANKING = Comparator.<ScoredPost>comparingDouble(p -> p.score)
+            .thenComparingLong(p -> p.postId);
+
+    private static final class Index {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private long totalLength;
+
+        void put(Document document) {
+            lock.writeLock().lock();
+            try {
+                removeDocument(document.id);
+                for (int i = 0; i < document.terms.length; i++) {
+                    postings.computeIfAbsent(document.terms[i], term -> new Postings())
+                            .put(document.id, document.frequencies[i]);
+                }
+                documents.put(document.id, document);
+                totalLength += document.length;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long postId) {
+            lock.writeLock().lock();
+            try {
+                removeDocument(postId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeDocument(long postId) {
+            Document previous = documents.remove(postId);
+            if (previous == null) {
+                return;
+            }
+            totalLength -= previous.length;
+            for (String term : previous.terms) {
+                Postings list = postings.get(term);
+                if (list != null && list.remove(postId)) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        int documentCount() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int termCount() {
+            lock.readLock().lock();
+            try {
+                return postings.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Hits search(List<String> terms, Long themeId, Long authorId, int offset, int limit) {
+            lock.readLock().lock();
+            try {
+                List<Postings> lists = new ArrayList<>(terms.size());
+                for (String term : terms) {
+                    Postings list = postings.get(term);
+                    if (list == null) {
+                        return Hits.EMPTY;
+                    }
+                    lists.add(list);
+                }
+                // Parcours de la liste la plus courte, les autres sont sondées par recherche dichotomique
+                lists.sort(Comparator.comparingInt(list -> list.size));
+
+                int documentCount = documents.size();
+                double averageLength = (double) totalLength / documentCount;
+                double[] idf = new double[lists.size()];
+                for (int t = 0; t < idf.length; t++) {
+                    int df = lists.get(t).size;
+                    idf[t] = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                }
+
+                int window = offset + limit;
+                PriorityQueue<ScoredPost> top = new PriorityQueue<>(window + 1, RANKING);
+                Map<Long, Integer> themeFacets = new HashMap<>();
+                Map<Long, Integer> authorFacets = new HashMap<>();
+                int total = 0;
+
+                Postings shortest = lists.get(0);
+                candidates:
+                for (int i = 0; i < shortest.size; i++) {
+                    long postId = shortest.postIds[i];
+                    Document document = documents.get(postId);
+                    double norm = K1 * (1 - B + B * document.length / averageLength);
+                    double score = 0;
+                    for (int t = 0; t < lists.size(); t++) {
+                        int frequency = t == 0 ? shortest.frequencies[i] : lists.get(t).frequency(postId);
+                        if (frequency == 0) {
+                            continue candidates;
+                        }
+                        score += idf[t] * frequency * (K1 + 1) / (frequency + norm);
+                    }
+
+                    if (document.themeId != null) {
+                        themeFacets.merge(document.themeId, 1, Integer::sum);
+                    }
+                    if (document.authorId != null) {
+                        authorFacets.merge(document.authorId, 1, Integer::sum);
+                    }
+                    if ((themeId != null && !themeId.equals(document.themeId))
+                            || (authorId != null && !authorId.equals(document.authorId))) {
+                        continue;
+                    }
+
+                    total++;
+                    top.offer(new ScoredPost(postId, score));
+                    if (top.size() > window) {
+                        top.poll();
+                    }
+                }
+
+                List<ScoredPost> ranked = new ArrayList<>(top);
+                ranked.sort(RANKING.reversed());
+                List<Long> page = ranked.subList(Math.min(offset, ranked.size()), ranked.size()).stream()
+                        .map(scored -> scored.postId)
+                        .collect(Collectors.toList());
+                return new Hits(page, total, topFacets(themeFacets), topFacets(authorFacets));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static Map<Long, Integer> topFacets(Map<Long, Integer> counts) {
+            Map<Long, Integer> top = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                    .limit(MAX_FACETS)
+                    .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+            return top;
+        }
+    }
+}
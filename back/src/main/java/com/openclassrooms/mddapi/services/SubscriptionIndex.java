@@ -0,0 +1,259 @@
+package com.openclassrooms.mddapi.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Index des abonnements en mémoire : thèmes suivis par utilisateur et abonnés par thème,
+ * sous forme de bitmaps compressés (Roaring) indexés par identifiant.
+ * <p>
+ * Chargé au démarrage depuis la table {@code abonnement}, puis tenu à jour après chaque écriture
+ * d'abonnements validée en base, en relisant les lignes de l'utilisateur (voir {@link #refreshUser(long)}).
+ * Les bitmaps publiés ne sont jamais modifiés : une écriture en publie une copie, de sorte que les lectures
+ * ne prennent aucun verrou. Un abonnement copie donc le bitmap des abonnés du thème, en O(abonnés) : acceptable
+ * tant que les écritures restent des actions d'utilisateurs, à revoir si un thème dépasse le million d'abonnés.
+ * Les identifiants doivent tenir sur un {@code int}.
+ */
+@Service
+// Chargé après la création du schéma par Hibernate (profil loadtest)
+@DependsOn("entityManagerFactory")
+public class SubscriptionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionIndex.class);
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Map<Integer, RoaringBitmap> themesByUser = new ConcurrentHashMap<>();
+    private volatile Map<Integer, RoaringBitmap> usersByTheme = new ConcurrentHashMap<>();
+    // Taille des bitmaps, hors tables de hachage, tenue à jour à chaque écriture
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final AtomicLong subscriptions = new AtomicLong();
+
+    @Autowired
+    public SubscriptionIndex(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        Gauge.builder("subscription.index.bytes", sizeInBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("subscription.index.subscriptions", subscriptions, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("subscription.index.users", this, index -> index.themesByUser.size()).register(meterRegistry);
+        Gauge.builder("subscription.index.themes", this, index -> index.usersByTheme.size()).register(meterRegistry);
+    }
+
+    /**
+     * Recharge tout l'index depuis la base, à appeler après des écritures directes dans {@code abonnement}.
+     */
+    @PostConstruct
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        Map<Integer, RoaringBitmap> byUser = new HashMap<>();
+        Map<Integer, RoaringBitmap> byTheme = new HashMap<>();
+        // Lecture ligne à ligne, sans matérialiser la table
+        jdbcTemplate.query("SELECT utilisateur_id, theme_id FROM abonnement", rs -> {
+            int userId = toInt(rs.getLong(1));
+            int themeId = toInt(rs.getLong(2));
+            byUser.computeIfAbsent(userId, id -> new RoaringBitmap()).add(themeId);
+            byTheme.computeIfAbsent(themeId, id -> new RoaringBitmap()).add(userId);
+        });
+
+        long bytes = compact(byUser) + compact(byTheme);
+        long count = 0;
+        for (RoaringBitmap themes : byUser.values()) {
+            count += themes.getLongCardinality();
+        }
+        themesByUser = new ConcurrentHashMap<>(byUser);
+        usersByTheme = new ConcurrentHashMap<>(byTheme);
+        sizeInBytes.set(bytes);
+        subscriptions.set(count);
+        log.info("Index des abonnements chargé en {} ms : {} abonnements, {} utilisateurs, {} thèmes, {} octets",
+                System.currentTimeMillis() - start, count, byUser.size(), byTheme.size(), bytes);
+    }
+
+    public boolean isSubscribed(long userId, long themeId) {
+        return themesByUser.getOrDefault(toInt(userId), EMPTY).contains(toInt(themeId));
+    }
+
+    public Set<Long> getFollowedThemeIds(long userId) {
+        RoaringBitmap themes = themesByUser.get(toInt(userId));
+        if (themes == null) {
+            return Collections.emptySet();
+        }
+        Set<Long> result = new LinkedHashSet<>();
+        themes.forEach((int themeId) -> result.add((long) themeId));
+        return result;
+    }
+
+    public int getFollowerCount(long themeId) {
+        return usersByTheme.getOrDefault(toInt(themeId), EMPTY).getCardinality();
+    }
+
+    /**
+     * Nombre d'abonnés de chaque thème suivi au moins une fois.
+     */
+    public Map<Long, Integer> getFollowerCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        usersByTheme.forEach((themeId, users) -> counts.put((long) themeId, users.getCardinality()));
+        return counts;
+    }
+
+    /**
+     * Parcourt les abonnés d'un thème par identifiant croissant, sans copie.
+     */
+    public void forEachFollower(long themeId, LongConsumer action) {
+        usersByTheme.getOrDefault(toInt(themeId), EMPTY).forEach((int userId) -> action.accept(userId));
+    }
+
+    public List<Long> getFollowerIds(long themeId) {
+        RoaringBitmap users = usersByTheme.getOrDefault(toInt(themeId), EMPTY);
+        List<Long> result = new ArrayList<>(users.getCardinality());
+        users.forEach((int userId) -> result.add((long) userId));
+        return result;
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+
+    public long getSubscriptionCount() {
+        return subscriptions.get();
+    }
+
+    // Les écritures sont rares (actions d'un utilisateur) : un seul verrou suffit et garde les deux sens cohérents
+
+    public synchronized void subscribe(long userId, long themeId) {
+        int user = toInt(userId);
+        int theme = toInt(themeId);
+        if (update(themesByUser, user, theme, true)) {
+            update(usersByTheme, theme, user, true);
+            subscriptions.incrementAndGet();
+        }
+    }
+
+    public synchronized void unsubscribe(long userId, long themeId) {
+        int user = toInt(userId);
+        int theme = toInt(themeId);
+        if (update(themesByUser, user, theme, false)) {
+            update(usersByTheme, theme, user, false);
+            subscriptions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Recharge les abonnements d'un utilisateur depuis la base, à appeler après leur modification.
+     * <p>
+     * La lecture est faite sous le verrou : deux écritures concurrentes du même utilisateur peuvent valider
+     * dans un ordre et rafraîchir dans l'autre, la dernière lecture voit quand même l'état validé le plus récent.
+     */
+    public synchronized void refreshUser(long userId) {
+        replace(userId, jdbcTemplate.queryForList(
+                "SELECT theme_id FROM abonnement WHERE utilisateur_id = ?", Long.class, userId));
+    }
+
+    /**
+     * Remplace les abonnements d'un utilisateur par {@code themeIds} : son bitmap est publié une fois, seuls
+     * les thèmes ajoutés ou retirés voient leurs abonnés modifiés.
+     */
+    public synchronized void replace(long userId, Collection<Long> themeIds) {
+        int user = toInt(userId);
+        RoaringBitmap desired = new RoaringBitmap();
+        for (Long themeId : themeIds) {
+            desired.add(toInt(themeId));
+        }
+        desired.runOptimize();
+        RoaringBitmap current = themesByUser.getOrDefault(user, EMPTY);
+        RoaringBitmap removed = RoaringBitmap.andNot(current, desired);
+        RoaringBitmap added = RoaringBitmap.andNot(desired, current);
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+
+        sizeInBytes.addAndGet(-(current == EMPTY ? 0 : current.getSizeInBytes()));
+        if (desired.isEmpty()) {
+            themesByUser.remove(user);
+        } else {
+            themesByUser.put(user, desired);
+            sizeInBytes.addAndGet(desired.getSizeInBytes());
+        }
+        removed.forEach((int themeId) -> update(usersByTheme, themeId, user, false));
+        added.forEach((int themeId) -> update(usersByTheme, themeId, user, true));
+        subscriptions.addAndGet(added.getLongCardinality() - removed.getLongCardinality());
+    }
+
+    /**
+     * À appeler après la suppression d'un utilisateur.
+     */
+    public synchronized void removeUser(long userId) {
+        RoaringBitmap themes = themesByUser.get(toInt(userId));
+        if (themes != null) {
+            themes.forEach((int themeId) -> unsubscribe(userId, themeId));
+        }
+    }
+
+    /**
+     * À appeler après la suppression d'un thème.
+     */
+    public synchronized void removeTheme(long themeId) {
+        RoaringBitmap users = usersByTheme.get(toInt(themeId));
+        if (users != null) {
+            users.forEach((int userId) -> unsubscribe(userId, themeId));
+        }
+    }
+
+    /**
+     * Publie une copie modifiée du bitmap de {@code key} ; renvoie {@code false} s'il n'y avait rien à changer.
+     */
+    private boolean update(Map<Integer, RoaringBitmap> index, int key, int value, boolean add) {
+        RoaringBitmap current = index.getOrDefault(key, EMPTY);
+        if (current.contains(value) == add) {
+            return false;
+        }
+        RoaringBitmap next = current.clone();
+        if (add) {
+            next.add(value);
+        } else {
+            next.remove(value);
+        }
+        next.runOptimize();
+        sizeInBytes.addAndGet(next.getSizeInBytes() - (current == EMPTY ? 0 : current.getSizeInBytes()));
+        if (next.isEmpty()) {
+            index.remove(key);
+            sizeInBytes.addAndGet(-next.getSizeInBytes());
+        } else {
+            index.put(key, next);
+        }
+        return true;
+    }
+
+    private static long compact(Map<Integer, RoaringBitmap> index) {
+        long bytes = 0;
+        for (RoaringBitmap bitmap : index.values()) {
+            bitmap.runOptimize();
+            bytes += bitmap.getSizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static int toInt(long id) {
+        return Math.toIntExact(id);
+    }
+}
@@ -0,0 +1,140 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.repositories.ThemeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Catalogue des thèmes en mémoire.
+ * <p>
+ * Les thèmes changent très rarement : ils sont chargés au démarrage puis servis sans accès base.
+ * Chaque écriture publie un nouvel instantané immuable, de sorte que les lectures ne voient jamais
+ * un état intermédiaire et ne prennent aucun verrou.
+ */
+@Service
+public class ThemeCatalog {
+
+    private final ThemeRepository themeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Identifie l'instance : un ETag émis avant un redémarrage ne doit pas être reconnu
+    private final long bootId = System.currentTimeMillis();
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), 0);
+
+    @Autowired
+    public ThemeCatalog(ThemeRepository themeRepository, PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        this.themeRepository = themeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hits = Counter.builder("theme.catalog.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("theme.catalog.lookups").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("theme.catalog.size", this, catalog -> catalog.snapshot.themes.size()).register(meterRegistry);
+    }
+
+    // Transaction explicite (@Transactional est sans effet sur un @PostConstruct) et non en lecture seule :
+    // lue sur le primaire, même avec des réplicas, pour voir l'écriture qui précède
+    @PostConstruct
+    public void reload() {
+        List<Theme> themes = transactionTemplate.execute(status -> themeRepository.findAll());
+        snapshot = new Snapshot(themes, generation.incrementAndGet());
+    }
+
+    public List<Theme> findAll() {
+        return snapshot.themes;
+    }
+
+    /**
+     * ETag de la liste complète : change à chaque publication d'un nouvel instantané.
+     */
+    public String listEtag() {
+        return "\"themes-" + bootId + "-" + snapshot.generation + "\"";
+    }
+
+    public Optional<Theme> findById(Long id) {
+        return record(snapshot.byId.get(id));
+    }
+
+    /**
+     * Recherche insensible à la casse, comme la collation de la colonne {@code nom}.
+     */
+    public Optional<Theme> findByName(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return record(snapshot.byName.get(normalize(name)));
+    }
+
+    /**
+     * À appeler après l'enregistrement d'un thème créé ou modifié.
+     */
+    public synchronized void put(Theme theme) {
+        List<Theme> themes = new ArrayList<>(snapshot.themes);
+        themes.removeIf(existing -> existing.getId().equals(theme.getId()));
+        themes.add(theme);
+        snapshot = new Snapshot(themes, generation.incrementAndGet());
+    }
+
+    /**
+     * À appeler après la suppression d'un thème.
+     */
+    public synchronized void remove(Long id) {
+        List<Theme> themes = new ArrayList<>(snapshot.themes);
+        themes.removeIf(existing -> existing.getId().equals(id));
+        snapshot = new Snapshot(themes, generation.incrementAndGet());
+    }
+
+    private Optional<Theme> record(Theme theme) {
+        (theme != null ? hits : misses).increment();
+        return Optional.ofNullable(theme);
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Snapshot {
+        private final List<Theme> themes;
+        private final long generation;
+        private final Map<Long, Theme> byId = new HashMap<>();
+        private final Map<String, Theme> byName = new HashMap<>();
+
+        Snapshot(List<Theme> source, long generation) {
+            this.generation = generation;
+            List<Theme> copies = new ArrayList<>(source.size());
+            for (Theme theme : source) {
+                // Copie détachée : pas de collections paresseuses followers/posts conservées en mémoire
+                Theme copy = new Theme();
+                copy.setId(theme.getId());
+                copy.setName(theme.getName());
+                copy.setDescription(theme.getDescription());
+                copy.setVersion(theme.getVersion());
+                copies.add(copy);
+                byId.put(copy.getId(), copy);
+                byName.put(normalize(copy.getName()), copy);
+            }
+            copies.sort(Comparator.comparing(Theme::getId));
+            this.themes = Collections.unmodifiableList(copies);
+        }
+    }
+}
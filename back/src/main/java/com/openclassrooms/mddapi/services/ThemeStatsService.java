@@ -0,0 +1,439 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.dto.ThemeStats;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.repositories.CommentRepository;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Statistiques des thèmes (abonnés, articles, activité récente) tenues en mémoire.
+ * <p>
+ * Les compteurs sont incrémentés par les écritures d'articles et de commentaires ; les abonnés viennent de
+ * {@link SubscriptionIndex}. L'activité récente est comptée par heure sur une fenêtre glissante de 7 jours :
+ * les fenêtres de 24 h et 7 jours sont donc exactes à l'heure près. Une réconciliation périodique recalcule
+ * tout depuis les agrégats SQL du primaire et corrige la dérive (imports, suppressions en cascade).
+ * <p>
+ * Les écritures notifiées pendant la lecture des agrégats sont enregistrées puis rejouées sur les compteurs
+ * recalculés : elles ne sont pas perdues au remplacement. Une écriture validée avant la lecture mais notifiée
+ * pendant est comptée deux fois, jusqu'à la réconciliation suivante. Les abonnés étant lus hors de la
+ * transaction des écritures d'abonnements, l'index n'est rechargé que si un écart persiste d'une
+ * réconciliation à la suivante.
+ */
+@Service
+public class ThemeStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThemeStatsService.class);
+
+    private static final int WINDOW_HOURS = 7 * 24;
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final UserRepository userRepository;
+    private final SubscriptionIndex subscriptionIndex;
+    private final ThemeCatalog themeCatalog;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reconcileInterval;
+    private final ScheduledExecutorService reconciler;
+
+    private final Timer reconcileTimer;
+    private final Counter postDrift;
+    private final Counter followerDrift;
+
+    private final Map<Long, Counters> counters = new ConcurrentHashMap<>();
+
+    // Écritures partagées entre elles, exclusives du remplacement des compteurs par une réconciliation
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // Écritures notifiées pendant une réconciliation, null hors réconciliation
+    private volatile Queue<Delta> recorded;
+    // Thèmes dont les abonnés différaient de la base à la réconciliation précédente
+    private Set<Long> followerSuspects = new HashSet<>();
+
+    @Autowired
+    public ThemeStatsService(PostRepository postRepository, CommentRepository commentRepository,
+                             UserRepository userRepository, SubscriptionIndex subscriptionIndex,
+                             ThemeCatalog themeCatalog, PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${theme.stats.reconcile-interval:10m}") Duration reconcileInterval) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.userRepository = userRepository;
+        this.subscriptionIndex = subscriptionIndex;
+        this.themeCatalog = themeCatalog;
+        // Pas en lecture seule : les agrégats sont lus sur le primaire, un réplica en retard fausserait les compteurs.
+        // Isolation par défaut de MySQL (lecture répétable) : toutes les requêtes voient le même instantané, sans quoi
+        // une écriture visible d'une seule d'entre elles serait rejouée en double
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileInterval = reconcileInterval;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "theme-stats-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reconcileTimer = Timer.builder("theme.stats.reconcile").register(meterRegistry);
+        this.postDrift = Counter.builder("theme.stats.drift").tag("counter", "posts").register(meterRegistry);
+        this.followerDrift = Counter.builder("theme.stats.drift").tag("counter", "followers").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reconcile();
+        long intervalMillis = reconcileInterval.toMillis();
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException e) {
+                log.warn("Réconciliation des statistiques de thèmes en échec : {}", e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    public void onPostCreated(Post post) {
+        if (post.getTheme() != null) {
+            apply(new Delta(post.getTheme().getId(), post.getCreatedAt(), 1, 0));
+        }
+    }
+
+    public void onPostDeleted(Post post) {
+        onPostDeleted(post.getTheme() != null ? post.getTheme().getId() : null, post.getCreatedAt());
+    }
+
+    public void onPostDeleted(Long themeId, LocalDateTime createdAt) {
+        if (themeId != null) {
+            apply(new Delta(themeId, createdAt, -1, 0));
+        }
+    }
+
+    /**
+     * Article déplacé d'un thème à un autre.
+     */
+    public void onPostMoved(Long fromThemeId, Long toThemeId, LocalDateTime createdAt) {
+        if (Objects.equals(fromThemeId, toThemeId)) {
+            return;
+        }
+        if (fromThemeId != null) {
+            apply(new Delta(fromThemeId, createdAt, -1, 0));
+        }
+        if (toThemeId != null) {
+            apply(new Delta(toThemeId, createdAt, 1, 0));
+        }
+    }
+
+    public void onCommentCreated(Long themeId, LocalDateTime createdAt) {
+        if (themeId != null) {
+            apply(new Delta(themeId, createdAt, 0, 1));
+        }
+    }
+
+    public void onThemeDeleted(Long themeId) {
+        apply(Delta.themeDeleted(themeId));
+    }
+
+    /**
+     * Statistiques de tous les thèmes du catalogue, par identifiant.
+     */
+    public List<ThemeStats> getStats() {
+        long currentHour = currentHour();
+        List<ThemeStats> stats = new ArrayList<>();
+        for (Theme theme : themeCatalog.findAll()) {
+            stats.add(statsOf(theme, currentHour));
+        }
+        return stats;
+    }
+
+    /**
+     * Thèmes les plus actifs sur les dernières 24 h (articles et commentaires), puis les plus suivis.
+     */
+    public List<ThemeStats> getTrending(int limit) {
+        return getStats().stream()
+                .filter(stats -> activity(stats) > 0)
+                .sorted(Comparator.comparingLong(ThemeStatsService::activity)
+                        .thenComparingLong(ThemeStats::getPostsLast7d)
+                        .thenComparingLong(ThemeStats::getFollowers)
+                        .reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Recalcule tous les compteurs depuis le primaire et remplace ceux en mémoire.
+     */
+    public synchronized void reconcile() {
+        reconcileTimer.record(() -> {
+            LocalDateTime since = LocalDateTime.now().minusHours(WINDOW_HOURS);
+            Map<Long, Counters> fresh = new HashMap<>();
+            Map<Long, Long> sqlFollowers = new HashMap<>();
+            Queue<Delta> deltas = new ConcurrentLinkedQueue<>();
+            recorded = deltas;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Object[] row : postRepository.countByTheme()) {
+                    Counters c = fresh.computeIfAbsent((Long) row[0], id -> new Counters());
+                    c.postCount = ((Number) row[1]).longValue();
+                    c.touch((LocalDateTime) row[2]);
+                }
+                for (Object[] row : commentRepository.findLastDateByTheme()) {
+                    fresh.computeIfAbsent((Long) row[0], id -> new Counters()).touch((LocalDateTime) row[1]);
+                }
+                for (Object[] row : postRepository.countByThemeAndHourSince(since)) {
+                    fresh.computeIfAbsent((Long) row[0], id -> new Counters())
+                            .bucket(hourRow(row), ((Number) row[5]).longValue(), 0);
+                }
+                for (Object[] row : commentRepository.countByThemeAndHourSince(since)) {
+                    fresh.computeIfAbsent((Long) row[0], id -> new Counters())
+                            .bucket(hourRow(row), 0, ((Number) row[5]).longValue());
+                }
+                for (Object[] row : userRepository.countFollowersByTheme()) {
+                    sqlFollowers.put((Long) row[0], ((Number) row[1]).longValue());
+                }
+            });
+
+            int postsDrifted = 0;
+            for (Long themeId : union(fresh.keySet(), counters.keySet())) {
+                Counters current = counters.get(themeId);
+                Counters next = fresh.get(themeId);
+                if ((current == null ? 0 : current.postCount()) != (next == null ? 0 : next.postCount)) {
+                    postsDrifted++;
+                }
+            }
+            postDrift.increment(postsDrifted);
+
+            swapLock.writeLock().lock();
+            try {
+                recorded = null;
+                for (Delta delta : deltas) {
+                    delta.applyTo(fresh);
+                }
+                counters.keySet().retainAll(fresh.keySet());
+                counters.putAll(fresh);
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+
+            // Les abonnés sont tenus par l'index : un écart isolé peut venir d'un abonnement validé entre les deux
+            // lectures, l'index n'est rechargé que si le même thème diffère encore à la réconciliation suivante
+            Map<Long, Integer> indexed = subscriptionIndex.getFollowerCounts();
+            Set<Long> drifted = new HashSet<>();
+            for (Long themeId : union(sqlFollowers.keySet(), indexed.keySet())) {
+                if (sqlFollowers.getOrDefault(themeId, 0L) != indexed.getOrDefault(themeId, 0).longValue()) {
+                    drifted.add(themeId);
+                }
+            }
+            followerDrift.increment(drifted.size());
+            Set<Long> persistent = new HashSet<>(drifted);
+            persistent.retainAll(followerSuspects);
+            if (!persistent.isEmpty()) {
+                log.warn("Abonnés de {} thèmes différents de la base : index des abonnements rechargé", persistent.size());
+                subscriptionIndex.reload();
+                drifted.clear();
+            }
+            followerSuspects = drifted;
+            if (postsDrifted > 0) {
+                log.info("Statistiques de thèmes réconciliées : {} thèmes corrigés", postsDrifted);
+            }
+        });
+    }
+
+    private ThemeStats statsOf(Theme theme, long currentHour) {
+        Counters c = counters.get(theme.getId());
+        long followers = subscriptionIndex.getFollowerCount(theme.getId());
+        if (c == null) {
+            return new ThemeStats(theme.getId(), theme.getName(), followers, 0, 0, 0, 0, null);
+        }
+        synchronized (c) {
+            return new ThemeStats(theme.getId(), theme.getName(), followers, c.postCount,
+                    c.postsSince(currentHour, 24), c.postsSince(currentHour, WINDOW_HOURS),
+                    c.commentsSince(currentHour, 24), c.lastActivity);
+        }
+    }
+
+    private void apply(Delta delta) {
+        swapLock.readLock().lock();
+        try {
+            delta.applyTo(counters);
+            Queue<Delta> deltas = recorded;
+            if (deltas != null) {
+                deltas.add(delta);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static LocalDateTime hourRow(Object[] row) {
+        return LocalDateTime.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue(),
+                ((Number) row[3]).intValue(), ((Number) row[4]).intValue(), 0);
+    }
+
+    private static long activity(ThemeStats stats) {
+        return stats.getPostsLast24h() + stats.getCommentsLast24h();
+    }
+
+    private static <T> List<T> union(Collection<T> a, Collection<T> b) {
+        List<T> result = new ArrayList<>(a);
+        for (T item : b) {
+            if (!a.contains(item)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static long currentHour() {
+        return hourOf(LocalDateTime.now());
+    }
+
+    private static long hourOf(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond() / 3600;
+    }
+
+    /**
+     * Écriture notifiée : variation des compteurs d'un thème, ou suppression du thème.
+     */
+    private static final class Delta {
+        private final Long themeId;
+        private final LocalDateTime createdAt;
+        private final long posts;
+        private final long comments;
+        private final boolean themeDeleted;
+
+        Delta(Long themeId, LocalDateTime createdAt, long posts, long comments) {
+            this(themeId, createdAt, posts, comments, false);
+        }
+
+        private Delta(Long themeId, LocalDateTime createdAt, long posts, long comments, boolean themeDeleted) {
+            this.themeId = themeId;
+            this.createdAt = createdAt;
+            this.posts = posts;
+            this.comments = comments;
+            this.themeDeleted = themeDeleted;
+        }
+
+        static Delta themeDeleted(Long themeId) {
+            return new Delta(themeId, null, 0, 0, true);
+        }
+
+        void applyTo(Map<Long, Counters> target) {
+            if (themeDeleted) {
+                target.remove(themeId);
+            } else {
+                target.computeIfAbsent(themeId, id -> new Counters()).add(createdAt, posts, comments);
+            }
+        }
+    }
+
+    /**
+     * Compteurs d'un thème : total d'articles, dernière activité et activité par heure sur la fenêtre glissante.
+     * Chaque case du tampon circulaire porte l'heure qu'elle compte ; une case d'une heure révolue est remise à zéro.
+     */
+    private static final class Counters {
+        private long postCount;
+        private LocalDateTime lastActivity;
+        private final long[] hours = new long[WINDOW_HOURS];
+        private final long[] posts = new long[WINDOW_HOURS];
+        private final long[] comments = new long[WINDOW_HOURS];
+
+        Counters() {
+            Arrays.fill(hours, -1);
+        }
+
+        synchronized long postCount() {
+            return postCount;
+        }
+
+        synchronized void add(LocalDateTime createdAt, long postDelta, long commentDelta) {
+            postCount += postDelta;
+            if (postDelta > 0 || commentDelta > 0) {
+                touch(createdAt);
+            }
+            bucket(createdAt, postDelta, commentDelta);
+        }
+
+        void touch(LocalDateTime dateTime) {
+            if (dateTime != null && (lastActivity == null || dateTime.isAfter(lastActivity))) {
+                lastActivity = dateTime;
+            }
+        }
+
+        void bucket(LocalDateTime dateTime, long postDelta, long commentDelta) {
+            if (dateTime == null) {
+                return;
+            }
+            long hour = hourOf(dateTime);
+            if (hour <= currentHour() - WINDOW_HOURS) {
+                return;
+            }
+            int slot = (int) Math.floorMod(hour, (long) WINDOW_HOURS);
+            if (hours[slot] != hour) {
+                if (hours[slot] > hour) {
+                    // Case déjà réutilisée par une heure plus récente
+                    return;
+                }
+                hours[slot] = hour;
+                posts[slot] = 0;
+                comments[slot] = 0;
+            }
+            posts[slot] += postDelta;
+            comments[slot] += commentDelta;
+        }
+
+        long postsSince(long currentHour, int window) {
+            return sum(posts, currentHour, window);
+        }
+
+        long commentsSince(long currentHour, int window) {
+            return sum(comments, currentHour, window);
+        }
+
+        private long sum(long[] values, long currentHour, int window) {
+            long total = 0;
+            for (int slot = 0; slot < WINDOW_HOURS; slot++) {
+                if (hours[slot] > currentHour - window && hours[slot] <= currentHour) {
+                    total += values[slot];
+                }
+            }
+            return total;
+        }
+    }
+}
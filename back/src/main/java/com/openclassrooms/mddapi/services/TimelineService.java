@@ -0,0 +1,456 @@
+package com.openclassrooms.mddapi.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Fils d'actualité matérialisés (fan-out à l'écriture).
+ * <p>
+ * Chaque utilisateur possède un fil borné des derniers articles de ses thèmes suivis, trié comme le fil SQL
+ * (date de création puis identifiant). La publication d'un article le pousse chez tous les abonnés du thème,
+ * sauf pour les thèmes trop suivis qui sont lus à la demande (fan-out à la lecture). Une suppression ou un
+ * changement de thème retire l'article des fils des abonnés qui ne le voient plus.
+ * <p>
+ * Seuls les fils des utilisateurs actifs sont gardés en mémoire ({@code feed.timeline.max-users}, expiration
+ * après {@code feed.timeline.expire-after-access} sans lecture) ; les autres sont rechargés à la demande.
+ */
+@Service
+public class TimelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimelineService.class);
+
+    // Articles validés pendant le chargement d'un fil : relus depuis cette marge avant le début du chargement
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final SubscriptionIndex subscriptionIndex;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxFanout;
+    private final boolean rebuildOnStartup;
+
+    private final int maxUsers;
+
+    private final Cache<Long, Timeline> timelines;
+    private final Set<Long> largeThemeIds = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TimelineService(PostRepository postRepository,
+                           UserRepository userRepository,
+                           SubscriptionIndex subscriptionIndex,
+                           MeterRegistry meterRegistry,
+                           @Value("${feed.timeline.enabled:false}") boolean enabled,
+                           @Value("${feed.timeline.capacity:500}") int capacity,
+                           @Value("${feed.timeline.max-fanout:10000}") int maxFanout,
+                           @Value("${feed.timeline.rebuild-on-startup:false}") boolean rebuildOnStartup,
+                           @Value("${feed.timeline.max-users:100000}") int maxUsers,
+                           @Value("${feed.timeline.expire-after-access:1h}") Duration expireAfterAccess) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.subscriptionIndex = subscriptionIndex;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxFanout = maxFanout;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.maxUsers = maxUsers;
+        this.timelines = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, timelines, "timelines");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (enabled && rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    /**
+     * Pousse un nouvel article dans le fil de chaque abonné de son thème.
+     */
+    public void onPostCreated(Post post) {
+        if (!enabled || post.getTheme() == null) {
+            return;
+        }
+        fanOut(post.getTheme().getId(), toMillis(post.getCreatedAt()), post.getId());
+    }
+
+    /**
+     * Retire un article supprimé des fils des abonnés de son thème.
+     */
+    public void onPostDeleted(Long postId, Long themeId) {
+        if (!enabled || themeId == null) {
+            return;
+        }
+        // Thème lu à la demande : la requête de fusion ne renvoie plus l'article
+        if (!largeThemeIds.contains(themeId)) {
+            forEachCachedTimeline(themeId, (followerId, timeline) -> timeline.remove(postId));
+        }
+    }
+
+    /**
+     * Article passé d'un thème à un autre : retiré des fils des abonnés de l'ancien thème qui ne suivent pas
+     * le nouveau, poussé dans ceux des abonnés du nouveau.
+     */
+    public void onPostMoved(Long postId, Long fromThemeId, Long toThemeId, LocalDateTime createdAt) {
+        if (!enabled || Objects.equals(fromThemeId, toThemeId)) {
+            return;
+        }
+        if (fromThemeId != null && !largeThemeIds.contains(fromThemeId)) {
+            forEachCachedTimeline(fromThemeId, (followerId, timeline) -> {
+                if (toThemeId == null || !subscriptionIndex.isSubscribed(followerId, toThemeId)) {
+                    timeline.remove(postId);
+                }
+            });
+        }
+        if (toThemeId != null) {
+            fanOut(toThemeId, toMillis(createdAt), postId);
+        }
+    }
+
+    /**
+     * Retire d'un fil des articles qui n'existent plus, constatés à la lecture de la page (suppression concurrente
+     * du chargement du fil).
+     */
+    public void forget(Long userId, Collection<Long> postIds) {
+        Timeline timeline = timelines.policy().getIfPresentQuietly(userId);
+        if (timeline != null) {
+            postIds.forEach(timeline::remove);
+        }
+    }
+
+    private void fanOut(Long themeId, long time, long postId) {
+        if (largeThemeIds.contains(themeId)) {
+            return;
+        }
+        if (subscriptionIndex.getFollowerCount(themeId) > maxFanout) {
+            // Thème trop suivi : ses articles seront fusionnés à la lecture
+            largeThemeIds.add(themeId);
+            return;
+        }
+        forEachCachedTimeline(themeId, (followerId, timeline) -> timeline.push(time, postId));
+    }
+
+    // Un fil absent sera reconstruit depuis la base à la prochaine lecture
+    private void forEachCachedTimeline(Long themeId, BiConsumer<Long, Timeline> action) {
+        subscriptionIndex.forEachFollower(themeId, followerId -> {
+            // Lecture sans effet sur l'expiration : seul l'accès de l'utilisateur garde son fil en mémoire
+            Timeline timeline = timelines.policy().getIfPresentQuietly(followerId);
+            if (timeline != null) {
+                action.accept(followerId, timeline);
+            }
+        });
+    }
+
+    /**
+     * Identifiants des {@code count} articles qui suivent {@code after} dans le fil (du plus récent au plus ancien,
+     * depuis le début si {@code null}), ou {@code null} si la page dépasse le fil matérialisé (lecture SQL classique).
+     */
+    public List<Long> getFeedPostIds(Long userId, Cursor after, int count) {
+        Timeline timeline = timelines.getIfPresent(userId);
+        if (timeline == null) {
+            timeline = load(userId, false);
+        }
+        List<Entry> materialized = after == null
+                ? timeline.newest(count)
+                : timeline.olderThan(toMillis(after.getCreatedAt()), after.getId(), count);
+        if (materialized.size() < count && timeline.isFull()) {
+            return null;
+        }
+
+        Set<Long> followedLargeThemes = followedLargeThemes(userId);
+        if (followedLargeThemes.isEmpty()) {
+            return ids(materialized, count);
+        }
+
+        TreeSet<Entry> merged = new TreeSet<>(materialized);
+        Set<Long> mergedIds = materialized.stream().map(entry -> entry.id).collect(Collectors.toSet());
+        PageRequest fetch = PageRequest.of(0, count);
+        List<Object[]> rows = after == null
+                ? postRepository.findEntriesByThemeIdIn(followedLargeThemes, fetch)
+                : postRepository.findEntriesByThemeIdInBefore(followedLargeThemes, after.getCreatedAt(), after.getId(), fetch);
+        for (Object[] row : rows) {
+            Entry entry = entry(row);
+            // Article déjà dans le fil s'il a été chargé avant que son thème ne passe en lecture à la demande
+            if (mergedIds.add(entry.id)) {
+                merged.add(entry);
+            }
+        }
+        return ids(merged, count);
+    }
+
+    /**
+     * Invalide le fil d'un utilisateur (changement d'abonnements) ; il sera reconstruit à la prochaine lecture.
+     */
+    public void invalidate(Long userId) {
+        timelines.invalidate(userId);
+    }
+
+    /**
+     * Invalide les fils des abonnés des thèmes donnés (articles ajoutés ou supprimés en masse : import,
+     * suppression d'un compte).
+     */
+    public void invalidateFollowers(Collection<Long> themeIds) {
+        if (!enabled) {
+            return;
+        }
+        for (Long themeId : themeIds) {
+            subscriptionIndex.forEachFollower(themeId, timelines::invalidate);
+        }
+    }
+
+    public void rebuild(Long userId) {
+        if (enabled) {
+            load(userId, true);
+        }
+    }
+
+    /**
+     * Reconstruit la liste des thèmes lus à la demande et les fils en mémoire : ceux des utilisateurs actifs,
+     * ou au démarrage ceux des {@code feed.timeline.max-users} premiers utilisateurs.
+     */
+    public int rebuildAll() {
+        long start = System.currentTimeMillis();
+        largeThemeIds.clear();
+        subscriptionIndex.getFollowerCounts().forEach((themeId, followers) -> {
+            if (followers > maxFanout) {
+                largeThemeIds.add(themeId);
+            }
+        });
+        List<Long> userIds = new ArrayList<>(timelines.asMap().keySet());
+        if (userIds.isEmpty()) {
+            userIds = userRepository.findAllIds().stream().limit(maxUsers).collect(Collectors.toList());
+        }
+        for (Long userId : userIds) {
+            load(userId, true);
+        }
+        log.info("{} fils d'actualité reconstruits en {} ms ({} thèmes en lecture à la demande)",
+                userIds.size(), System.currentTimeMillis() - start, largeThemeIds.size());
+        return userIds.size();
+    }
+
+    /**
+     * Charge le fil depuis la base puis le publie. Un article validé après la lecture mais avant la publication
+     * n'a été poussé à personne : les articles récents sont relus une fois le fil visible des publications.
+     */
+    private Timeline load(Long userId, boolean replace) {
+        LocalDateTime since = LocalDateTime.now().minus(CATCH_UP_MARGIN);
+        Timeline timeline = new Timeline(capacity);
+        for (Object[] row : postRepository.findFeedEntriesByUserId(userId, PageRequest.of(0, capacity))) {
+            Entry entry = entry(row);
+            timeline.push(entry.time, entry.id);
+        }
+        if (replace) {
+            timelines.put(userId, timeline);
+        } else {
+            Timeline existing = timelines.asMap().putIfAbsent(userId, timeline);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        for (Object[] row : postRepository.findFeedEntriesByUserIdSince(userId, since)) {
+            Entry entry = entry(row);
+            timeline.push(entry.time, entry.id);
+        }
+        return timeline;
+    }
+
+    private Set<Long> followedLargeThemes(Long userId) {
+        if (largeThemeIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Long> result = new HashSet<>(subscriptionIndex.getFollowedThemeIds(userId));
+        result.retainAll(largeThemeIds);
+        return result;
+    }
+
+    private static List<Long> ids(Collection<Entry> entries, int limit) {
+        List<Long> ids = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry entry : entries) {
+            if (ids.size() == limit) {
+                break;
+            }
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    private static Entry entry(Object[] row) {
+        return new Entry(toMillis((LocalDateTime) row[1]), ((Number) row[0]).longValue());
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Article du fil, ordonné du plus récent au plus ancien (date de création puis identifiant).
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final long time;
+        private final long id;
+
+        Entry(long time, long id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(other.time, time);
+            return byTime != 0 ? byTime : Long.compare(other.id, id);
+        }
+    }
+
+    /**
+     * Fil borné trié par (date, identifiant), le plus récent en dernier. Un article plus ancien que tout
+     * un fil plein est ignoré : la lecture au-delà du fil passe par la requête SQL.
+     */
+    private static final class Timeline {
+        // La base peut arrondir la date à la seconde : un même article relu depuis la base est reconnu à cette tolérance
+        private static final long TIME_TOLERANCE_MILLIS = 1000;
+
+        private final long[] times;
+        private final long[] ids;
+        private int size;
+
+        Timeline(int capacity) {
+            this.times = new long[capacity];
+            this.ids = new long[capacity];
+        }
+
+        synchronized void push(long time, long id) {
+            int index = insertionPoint(time, id);
+            if (contains(index, time, id)) {
+                return;
+            }
+            if (size == ids.length) {
+                if (index == 0) {
+                    return;
+                }
+                // Plus ancien retiré : décalage d'un cran vers la gauche jusqu'au point d'insertion
+                index--;
+                System.arraycopy(times, 1, times, 0, index);
+                System.arraycopy(ids, 1, ids, 0, index);
+            } else {
+                System.arraycopy(times, index, times, index + 1, size - index);
+                System.arraycopy(ids, index, ids, index + 1, size - index);
+                size++;
+            }
+            times[index] = time;
+            ids[index] = id;
+        }
+
+        synchronized void remove(long id) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ids[i] == id) {
+                    System.arraycopy(times, i + 1, times, i, size - i - 1);
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        synchronized List<Entry> newest(int limit) {
+            int count = Math.min(limit, size);
+            List<Entry> result = new ArrayList<>(count);
+            for (int i = size - 1; i >= size - count; i--) {
+                result.add(new Entry(times[i], ids[i]));
+            }
+            return result;
+        }
+
+        /**
+         * Entrées plus anciennes que (time, id), la plus récente en premier. L'article du curseur est d'abord
+         * cherché par identifiant : sa date relue en base peut différer de celle du fil.
+         */
+        synchronized List<Entry> olderThan(long time, long id, int limit) {
+            int index = insertionPoint(time, id);
+            int position = indexOf(index, time, id);
+            int end = position >= 0 ? position : index;
+            int count = Math.min(limit, end);
+            List<Entry> result = new ArrayList<>(count);
+            for (int i = end - 1; i >= end - count; i--) {
+                result.add(new Entry(times[i], ids[i]));
+            }
+            return result;
+        }
+
+        synchronized boolean isFull() {
+            return size == ids.length;
+        }
+
+        // Premier indice dont l'entrée est postérieure à (time, id)
+        private int insertionPoint(long time, long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time || (times[mid] == time && ids[mid] <= id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private boolean contains(int index, long time, long id) {
+            return indexOf(index, time, id) >= 0;
+        }
+
+        // Position de l'article autour du point d'insertion, à la tolérance de date près ; -1 s'il est absent
+        private int indexOf(int index, long time, long id) {
+            for (int i = index - 1; i >= 0 && time - times[i] <= TIME_TOLERANCE_MILLIS; i--) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            for (int i = index; i < size && times[i] - time <= TIME_TOLERANCE_MILLIS; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,3 @@
+-- Index utilisé par le fil d'actualité (/api/feed) :
+-- filtrage par thème puis tri par date de création sans tri en mémoire
+CREATE INDEX idx_article_theme_date ON article (theme_id, date_creation);
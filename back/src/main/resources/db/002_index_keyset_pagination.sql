@@ -0,0 +1,4 @@
+-- Index utilisés par la pagination par curseur (date, id) des listes
+CREATE INDEX idx_article_auteur_date ON article (auteur_id, date_creation);
+CREATE INDEX idx_commentaire_article_date ON commentaire (article_id, date_commentaire);
+CREATE INDEX idx_utilisateur_date_inscription ON utilisateur (date_inscription);
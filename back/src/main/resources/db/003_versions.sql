@@ -0,0 +1,4 @@
+-- Versions et dates de modification utilisées par les requêtes conditionnelles (ETag / Last-Modified)
+ALTER TABLE article ADD COLUMN version BIGINT NOT NULL DEFAULT 0, ADD COLUMN date_modification DATETIME NULL;
+ALTER TABLE commentaire ADD COLUMN version BIGINT NOT NULL DEFAULT 0, ADD COLUMN date_modification DATETIME NULL;
+ALTER TABLE theme ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
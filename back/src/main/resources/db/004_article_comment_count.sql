@@ -0,0 +1,5 @@
+-- Nombre de commentaires dénormalisé sur l'article : les listes ne lisent plus la table commentaire
+ALTER TABLE article ADD COLUMN comment_count BIGINT NOT NULL DEFAULT 0;
+
+-- Initialisation, à relancer pour corriger une dérive (suppressions directes en base, imports)
+UPDATE article a SET comment_count = (SELECT COUNT(*) FROM commentaire c WHERE c.article_id = a.id);
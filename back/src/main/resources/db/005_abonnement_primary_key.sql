@@ -0,0 +1,4 @@
+-- Abonnements écrits par INSERT IGNORE / DELETE sur (utilisateur_id, theme_id) : le couple doit être unique
+-- pour que l'abonnement soit idempotent. Les schémas générés par Hibernate ont déjà cette clé primaire
+-- (SHOW KEYS FROM abonnement) : ce script ne concerne que les tables créées à la main.
+ALTER TABLE abonnement ADD PRIMARY KEY (utilisateur_id, theme_id);
@@ -0,0 +1,3 @@
+-- Liste de tous les articles (GET /api/posts) paginée par curseur (date, id) ; InnoDB ajoute la clé primaire
+-- à l'index secondaire, qui couvre donc le tri (date_creation, id)
+CREATE INDEX idx_article_date ON article (date_creation);
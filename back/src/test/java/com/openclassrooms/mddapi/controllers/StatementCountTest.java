@@ -0,0 +1,185 @@
+package com.openclassrooms.mddapi.controllers;
+
+import com.openclassrooms.mddapi.models.Comment;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.models.User;
+import com.openclassrooms.mddapi.repositories.CommentRepository;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.repositories.ThemeRepository;
+import com.openclassrooms.mddapi.repositories.UserRepository;
+import com.openclassrooms.mddapi.security.AuthenticatedUser;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Nombre de requêtes SQL préparées par endpoint de lecture : identique pour une ligne et pour
+ * {@value #ROWS} lignes (auteurs et thèmes tous distincts), sans chargement N+1.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StatementCountTest {
+
+    private static final int ROWS = 10;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ThemeRepository themeRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void postDetailIssuesSameStatementsForOneAndManyComments() throws Exception {
+        User viewer = newUser();
+        Post single = postWithComments(1);
+        Post many = postWithComments(ROWS);
+
+        long forOne = countStatements(get("/api/posts/" + single.getId()), viewer);
+        long forMany = countStatements(get("/api/posts/" + many.getId()), viewer);
+
+        assertThat(forMany).isEqualTo(forOne);
+    }
+
+    @Test
+    void commentPageIssuesSameStatementsForOneAndManyComments() throws Exception {
+        User viewer = newUser();
+        Post single = postWithComments(1);
+        Post many = postWithComments(ROWS);
+
+        long forOne = countStatements(get("/api/comments/post/" + single.getId()), viewer);
+        long forMany = countStatements(get("/api/comments/post/" + many.getId()), viewer);
+
+        assertThat(forMany).isEqualTo(forOne);
+    }
+
+    @Test
+    void feedIssuesSameStatementsForOneAndManyPosts() throws Exception {
+        User followsOne = newUser();
+        Theme theme = newTheme();
+        newPost(newUser(), theme);
+        userRepository.subscribe(followsOne.getId(), theme.getId());
+
+        User followsMany = newUser();
+        for (int i = 0; i < ROWS; i++) {
+            Theme followed = newTheme();
+            newPost(newUser(), followed);
+            userRepository.subscribe(followsMany.getId(), followed.getId());
+        }
+
+        long forOne = countStatements(get("/api/feed"), followsOne);
+        long forMany = countStatements(get("/api/feed"), followsMany);
+
+        assertThat(forMany).isEqualTo(forOne);
+    }
+
+    @Test
+    void userPageIssuesSameStatementsForOneAndManyUsers() throws Exception {
+        User viewer = newUser();
+        for (int i = 0; i < ROWS; i++) {
+            newUser();
+        }
+
+        long forOne = countStatements(get("/api/users").param("limit", "1"), viewer);
+        long forMany = countStatements(get("/api/users").param("limit", String.valueOf(ROWS)), viewer);
+
+        assertThat(forMany).isEqualTo(forOne);
+    }
+
+    private long countStatements(MockHttpServletRequestBuilder request, User viewer) throws Exception {
+        AuthenticatedUser principal = new AuthenticatedUser(viewer.getId(), viewer.getEmail(), viewer.getPassword(),
+                Collections.emptyList());
+        statistics.clear();
+        MvcResult result = mockMvc.perform(request.with(user(principal))).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result.getAsyncResult(5000);
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private Post postWithComments(int comments) {
+        Post post = newPost(newUser(), newTheme());
+        for (int i = 0; i < comments; i++) {
+            Comment comment = new Comment();
+            comment.setContent("Commentaire " + i);
+            comment.setAuthor(newUser());
+            comment.setPost(post);
+            transactionTemplate.executeWithoutResult(status -> {
+                commentRepository.save(comment);
+                postRepository.incrementCommentCount(post.getId(), 1);
+            });
+        }
+        return post;
+    }
+
+    private Post newPost(User author, Theme theme) {
+        Post post = new Post();
+        post.setTitle("Article " + SEQUENCE.incrementAndGet());
+        post.setContent("Contenu");
+        post.setAuthor(author);
+        post.setTheme(theme);
+        return postRepository.save(post);
+    }
+
+    private Theme newTheme() {
+        Theme theme = new Theme();
+        theme.setName("theme-" + SEQUENCE.incrementAndGet());
+        return themeRepository.save(theme);
+    }
+
+    private User newUser() {
+        int n = SEQUENCE.incrementAndGet();
+        User user = new User();
+        user.setUsername("user" + n);
+        user.setEmail("user" + n + "@test.fr");
+        user.setPassword("{noop}secret");
+        return userRepository.save(user);
+    }
+}
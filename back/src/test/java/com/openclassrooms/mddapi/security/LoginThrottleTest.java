@@ -0,0 +1,50 @@
+package com.openclassrooms.mddapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottleTest {
+
+    private static final int IP_CAPACITY = 20;
+    private static final int MAX_ENTRIES = 64 * 64;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginThrottle throttle = new LoginThrottle(meterRegistry, true,
+            5, Duration.ofMinutes(1), IP_CAPACITY, Duration.ofMinutes(1), MAX_ENTRIES);
+
+    @Test
+    void rejectedIpDoesNotFillIdentifierTable() {
+        // Une adresse épuise son seau puis envoie des identifiants aléatoires
+        for (int i = 0; i < IP_CAPACITY; i++) {
+            assertThat(throttle.tryAcquire("attaque-" + i, "10.0.0.1").isAllowed()).isTrue();
+        }
+        for (int i = IP_CAPACITY; i < 20 * MAX_ENTRIES; i++) {
+            assertThat(throttle.tryAcquire("attaque-" + i, "10.0.0.1").getDecision())
+                    .isEqualTo(LoginThrottle.Decision.REJECTED_IP);
+        }
+
+        assertThat(identifierEntries()).isEqualTo(IP_CAPACITY);
+        // Les utilisateurs légitimes, chacun depuis sa propre adresse, ne sont pas refusés
+        for (int i = 0; i < 500; i++) {
+            assertThat(throttle.tryAcquire("utilisateur-" + i, "10.1." + (i / 256) + "." + (i % 256)).isAllowed()).isTrue();
+        }
+    }
+
+    @Test
+    void identifierIsLimitedAcrossAddresses() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(throttle.tryAcquire("Alice", "10.2.0." + i).isAllowed()).isTrue();
+        }
+        LoginThrottle.Result result = throttle.tryAcquire(" alice ", "10.2.0.99");
+        assertThat(result.getDecision()).isEqualTo(LoginThrottle.Decision.REJECTED_IDENTIFIER);
+        assertThat(result.getRetryAfterSeconds()).isPositive();
+    }
+
+    private double identifierEntries() {
+        return meterRegistry.get("auth.login.throttle.entries").tag("key", "identifier").gauge().value();
+    }
+}
@@ -0,0 +1,133 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.dto.PostDocument;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.models.User;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reconstruction de l'index : les écritures notifiées pendant la lecture de la base sont rejouées
+ * sur le nouvel index, les recherches restent servies par l'ancien jusqu'à la bascule.
+ */
+class PostSearchIndexTest {
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final List<PostDocument> rows = new ArrayList<>();
+    private PostSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new PostSearchIndex(postRepository, new SimpleMeterRegistry(), true, false, 1000, 2);
+        rows.addAll(Arrays.asList(document(1L, "Coroutines Kotlin"), document(2L, "Streams Java")));
+        when(postRepository.findMaxId()).thenReturn(2L);
+    }
+
+    @Test
+    void writesNotifiedDuringRebuildAreReplayed() {
+        when(postRepository.findDocumentsByIdRange(anyLong(), anyLong())).thenAnswer(invocation -> {
+            // Écritures validées après la lecture : absentes des lignes renvoyées
+            searchIndex.index(post(3L, "Records Java"));
+            searchIndex.remove(2L);
+            return rows;
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(ids("java")).containsExactly(3L);
+        assertThat(ids("kotlin")).containsExactly(1L);
+    }
+
+    @Test
+    void searchesUseCurrentIndexUntilRebuildCompletes() {
+        searchIndex.index(post(9L, "Ancien forum"));
+        List<List<Long>> duringRebuild = new ArrayList<>();
+        when(postRepository.findDocumentsByIdRange(anyLong(), anyLong())).thenAnswer(invocation -> {
+            duringRebuild.add(ids("forum"));
+            duringRebuild.add(ids("kotlin"));
+            return rows;
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(duringRebuild).containsExactly(List.of(9L), List.of());
+        assertThat(ids("forum")).isEmpty();
+        assertThat(ids("kotlin")).containsExactly(1L);
+    }
+
+    @Test
+    void failedRebuildKeepsCurrentIndex() {
+        searchIndex.index(post(9L, "Ancien forum"));
+        when(postRepository.findDocumentsByIdRange(anyLong(), anyLong()))
+                .thenThrow(new IllegalStateException("base indisponible"))
+                .thenReturn(rows);
+
+        assertThatThrownBy(searchIndex::rebuild).isInstanceOf(IllegalStateException.class);
+        assertThat(ids("forum")).containsExactly(9L);
+
+        // Reconstruction suivante acceptée : l'échec n'a pas laissé de reconstruction en cours
+        searchIndex.rebuild();
+        assertThat(ids("forum")).isEmpty();
+        assertThat(ids("java")).containsExactly(2L);
+    }
+
+    private List<Long> ids(String query) {
+        return searchIndex.search(query, null, null, 0, 10).getPostIds();
+    }
+
+    private static Post post(Long id, String title) {
+        Theme theme = new Theme();
+        theme.setId(1L);
+        User author = new User();
+        author.setId(1L);
+        Post post = new Post();
+        post.setId(id);
+        post.setTitle(title);
+        post.setContent("");
+        post.setTheme(theme);
+        post.setAuthor(author);
+        return post;
+    }
+
+    private static PostDocument document(Long id, String title) {
+        return new PostDocument() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public String getContent() {
+                return "";
+            }
+
+            @Override
+            public Long getThemeId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getAuthorId() {
+                return 1L;
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.dto.ThemeStats;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.repositories.CommentRepository;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compteurs horaires, réconciliation avec les agrégats SQL et rejeu des écritures notifiées pendant la lecture.
+ */
+class ThemeStatsServiceTest {
+
+    private static final Long THEME_ID = 1L;
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SubscriptionIndex subscriptionIndex = mock(SubscriptionIndex.class);
+    private final ThemeCatalog themeCatalog = mock(ThemeCatalog.class);
+
+    private ThemeStatsService service;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        // Début d'heure : les décalages de quelques heures restent dans l'heure visée
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusMinutes(30);
+        Theme theme = new Theme();
+        theme.setId(THEME_ID);
+        theme.setName("java");
+        when(themeCatalog.findAll()).thenReturn(Collections.singletonList(theme));
+        when(subscriptionIndex.getFollowerCounts()).thenReturn(Collections.emptyMap());
+        service = new ThemeStatsService(postRepository, commentRepository, userRepository, subscriptionIndex,
+                themeCatalog, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void recentActivityIsCountedPerHourWindow() {
+        service.onPostCreated(post(now));
+        service.onPostCreated(post(now.minusHours(2)));
+        service.onPostCreated(post(now.minusHours(30)));
+        // Hors de la fenêtre de 7 jours : compté dans le total seulement
+        service.onPostCreated(post(now.minusDays(8)));
+        service.onCommentCreated(THEME_ID, now.minusHours(1));
+        service.onPostDeleted(THEME_ID, now.minusHours(2));
+
+        ThemeStats stats = stats();
+        assertThat(stats.getPosts()).isEqualTo(3);
+        assertThat(stats.getPostsLast24h()).isEqualTo(1);
+        assertThat(stats.getPostsLast7d()).isEqualTo(2);
+        assertThat(stats.getCommentsLast24h()).isEqualTo(1);
+        assertThat(stats.getLastActivity()).isEqualTo(now);
+    }
+
+    @Test
+    void reconcileReplacesCountersWithAggregates() {
+        service.onPostCreated(post(now));
+        service.onPostCreated(post(now));
+        stubAggregates(5, 3);
+
+        service.reconcile();
+
+        ThemeStats stats = stats();
+        assertThat(stats.getPosts()).isEqualTo(5);
+        assertThat(stats.getPostsLast24h()).isEqualTo(3);
+        assertThat(stats.getPostsLast7d()).isEqualTo(3);
+    }
+
+    @Test
+    void writeNotifiedDuringReconcileIsReplayed() {
+        // Article validé après l'instantané lu par la réconciliation, notifié pendant la lecture
+        when(postRepository.countByTheme()).thenAnswer(invocation -> {
+            service.onPostCreated(post(now));
+            return rows(new Object[]{THEME_ID, 5L, now.minusHours(1)});
+        });
+        when(postRepository.countByThemeAndHourSince(any())).thenReturn(rows(hourRow(now.minusHours(1), 5)));
+
+        service.reconcile();
+
+        assertThat(stats().getPosts()).isEqualTo(6);
+        assertThat(stats().getPostsLast24h()).isEqualTo(6);
+        assertThat(stats().getLastActivity()).isEqualTo(now);
+    }
+
+    @Test
+    void writeAlreadyInSnapshotIsCountedTwiceUntilNextReconcile() {
+        // Article validé avant l'instantané (compté par les agrégats) mais notifié pendant la lecture
+        when(postRepository.countByTheme()).thenAnswer(invocation -> {
+            service.onPostCreated(post(now));
+            return rows(new Object[]{THEME_ID, 6L, now});
+        });
+        when(postRepository.countByThemeAndHourSince(any())).thenReturn(rows(hourRow(now, 6)));
+
+        service.reconcile();
+        assertThat(stats().getPosts()).isEqualTo(7);
+
+        stubAggregates(6, 6);
+        service.reconcile();
+        assertThat(stats().getPosts()).isEqualTo(6);
+        assertThat(stats().getPostsLast24h()).isEqualTo(6);
+    }
+
+    @Test
+    void themeDeletedDuringReconcileIsNotRestored() {
+        when(postRepository.countByTheme()).thenAnswer(invocation -> {
+            service.onThemeDeleted(THEME_ID);
+            return rows(new Object[]{THEME_ID, 5L, now});
+        });
+
+        service.reconcile();
+
+        assertThat(stats().getPosts()).isZero();
+    }
+
+    @Test
+    void subscriptionIndexIsReloadedOnlyWhenFollowerDriftPersists() {
+        stubAggregates(0, 0);
+        when(userRepository.countFollowersByTheme()).thenReturn(rows(new Object[]{THEME_ID, 3L}));
+        when(subscriptionIndex.getFollowerCounts()).thenReturn(Map.of(THEME_ID, 2));
+
+        service.reconcile();
+        verify(subscriptionIndex, never()).reload();
+
+        service.reconcile();
+        verify(subscriptionIndex, times(1)).reload();
+    }
+
+    private void stubAggregates(long posts, long postsCurrentHour) {
+        when(postRepository.countByTheme()).thenReturn(rows(new Object[]{THEME_ID, posts, now}));
+        when(postRepository.countByThemeAndHourSince(any())).thenReturn(rows(hourRow(now, postsCurrentHour)));
+    }
+
+    private ThemeStats stats() {
+        return service.getStats().get(0);
+    }
+
+    private static Post post(LocalDateTime createdAt) {
+        Theme theme = new Theme();
+        theme.setId(THEME_ID);
+        Post post = new Post();
+        post.setTheme(theme);
+        post.setCreatedAt(createdAt);
+        return post;
+    }
+
+    // Ligne de countByThemeAndHourSince : [thème, année, mois, jour, heure, nombre]
+    private static Object[] hourRow(LocalDateTime hour, long count) {
+        return new Object[]{THEME_ID, hour.getYear(), hour.getMonthValue(), hour.getDayOfMonth(), hour.getHour(), count};
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+}
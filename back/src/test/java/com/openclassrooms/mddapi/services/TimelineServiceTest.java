@@ -0,0 +1,150 @@
+package com.openclassrooms.mddapi.services;
+
+import com.openclassrooms.mddapi.dto.Cursor;
+import com.openclassrooms.mddapi.models.Post;
+import com.openclassrooms.mddapi.models.Theme;
+import com.openclassrooms.mddapi.repositories.PostRepository;
+import com.openclassrooms.mddapi.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lecture du fil matérialisé par curseur, fusionné avec les articles des thèmes trop suivis lus à la demande.
+ */
+class TimelineServiceTest {
+
+    private static final long USER_ID = 7L;
+    private static final long SMALL_THEME = 1L;
+    private static final long LARGE_THEME = 2L;
+    private static final int MAX_FANOUT = 10;
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final SubscriptionIndex subscriptionIndex = mock(SubscriptionIndex.class);
+    // Articles des deux thèmes : identifiants impairs dans le petit thème, pairs dans le grand
+    private final List<Object[]> smallThemePosts = new ArrayList<>();
+    private final List<Object[]> largeThemePosts = new ArrayList<>();
+
+    private TimelineService service;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 20; id++) {
+            Object[] row = {id, BASE.plusMinutes(id)};
+            (id % 2 == 1 ? smallThemePosts : largeThemePosts).add(row);
+        }
+        when(subscriptionIndex.getFollowedThemeIds(USER_ID)).thenReturn(Set.of(SMALL_THEME, LARGE_THEME));
+        when(subscriptionIndex.getFollowerCount(SMALL_THEME)).thenReturn(1);
+        when(subscriptionIndex.getFollowerCount(LARGE_THEME)).thenReturn(MAX_FANOUT + 1);
+        doAnswer(invocation -> {
+            invocation.<LongConsumer>getArgument(1).accept(USER_ID);
+            return null;
+        }).when(subscriptionIndex).forEachFollower(anyLong(), any());
+        // Fil chargé depuis la base : articles du petit thème seulement, le grand étant lu à la demande
+        when(postRepository.findFeedEntriesByUserId(eq(USER_ID), any())).thenAnswer(invocation ->
+                newest(smallThemePosts, invocation.<Pageable>getArgument(1).getPageSize()));
+        when(postRepository.findEntriesByThemeIdIn(any(), any())).thenAnswer(invocation ->
+                newest(largeThemePosts, invocation.<Pageable>getArgument(1).getPageSize()));
+        when(postRepository.findEntriesByThemeIdInBefore(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Cursor cursor = new Cursor(invocation.getArgument(1), invocation.getArgument(2));
+            List<Object[]> before = largeThemePosts.stream()
+                    .filter(row -> olderThan(row, cursor))
+                    .collect(Collectors.toList());
+            return newest(before, invocation.<Pageable>getArgument(3).getPageSize());
+        });
+    }
+
+    @Test
+    void largeThemePostsAreMergedIntoTimelinePages() {
+        service = timelineService(100);
+        markLargeTheme();
+
+        List<Long> firstPage = service.getFeedPostIds(USER_ID, null, 5);
+        assertThat(firstPage).containsExactly(20L, 19L, 18L, 17L, 16L);
+
+        List<Long> secondPage = service.getFeedPostIds(USER_ID, cursorOf(16L), 5);
+        assertThat(secondPage).containsExactly(15L, 14L, 13L, 12L, 11L);
+
+        List<Long> lastPage = service.getFeedPostIds(USER_ID, cursorOf(2L), 5);
+        assertThat(lastPage).containsExactly(1L);
+    }
+
+    @Test
+    void pushedPostIsFoundByIdWhenCursorDateIsRounded() {
+        service = timelineService(100);
+        markLargeTheme();
+        // Date poussée à la milliseconde, relue arrondie à la seconde supérieure par la base : comparé à sa seule
+        // date, le curseur placerait l'article parmi les plus anciens et la page suivante le répéterait
+        service.onPostCreated(post(21L, SMALL_THEME, BASE.plusMinutes(21).minusNanos(400_000_000)));
+
+        assertThat(service.getFeedPostIds(USER_ID, null, 2)).containsExactly(21L, 20L);
+        Cursor rounded = new Cursor(BASE.plusMinutes(21), 21L);
+        assertThat(service.getFeedPostIds(USER_ID, rounded, 3)).containsExactly(20L, 19L, 18L);
+    }
+
+    @Test
+    void pageBeyondFullTimelineFallsBackToSql() {
+        service = timelineService(4);
+
+        assertThat(service.getFeedPostIds(USER_ID, null, 4)).containsExactly(19L, 17L, 15L, 13L);
+        assertThat(service.getFeedPostIds(USER_ID, cursorOf(13L), 4)).isNull();
+    }
+
+    private TimelineService timelineService(int capacity) {
+        return new TimelineService(postRepository, mock(UserRepository.class), subscriptionIndex,
+                new SimpleMeterRegistry(), true, capacity, MAX_FANOUT, false, 1000, Duration.ofHours(1));
+    }
+
+    // Une publication dans un thème trop suivi le fait passer en lecture à la demande
+    private void markLargeTheme() {
+        service.getFeedPostIds(USER_ID, null, 1);
+        service.onPostCreated(post(20L, LARGE_THEME, BASE.plusMinutes(20)));
+    }
+
+    private static Post post(long id, long themeId, LocalDateTime createdAt) {
+        Theme theme = new Theme();
+        theme.setId(themeId);
+        Post post = new Post();
+        post.setId(id);
+        post.setTheme(theme);
+        post.setCreatedAt(createdAt);
+        return post;
+    }
+
+    private static Cursor cursorOf(long id) {
+        return new Cursor(BASE.plusMinutes(id), id);
+    }
+
+    private static boolean olderThan(Object[] row, Cursor cursor) {
+        LocalDateTime createdAt = (LocalDateTime) row[1];
+        return createdAt.isBefore(cursor.getCreatedAt())
+                || (createdAt.isEqual(cursor.getCreatedAt()) && (Long) row[0] < cursor.getId());
+    }
+
+    private static List<Object[]> newest(Collection<Object[]> rows, int limit) {
+        return rows.stream()
+                .sorted(Comparator.comparing((Object[] row) -> (LocalDateTime) row[1]).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+}
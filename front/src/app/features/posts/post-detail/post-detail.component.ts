@@ -4,7 +4,7 @@ import { FormBuilder, FormGroup, Validators } from '@angular/forms';
 import { takeUntilDestroyed } from '@angular/core/rxjs-interop';
 import { PostService } from 'src/app/services/post.service';
 import { CommentService } from 'src/app/services/comment.service';
-import { Post, Comment } from 'src/app/models/post.model';
+import { Post, Comment, CursorPage } from 'src/app/models/post.model';
 
 @Component({
   selector: 'app-post-detail',
@@ -14,6 +14,8 @@ import { Post, Comment } from 'src/app/models/post.model';
 export class PostDetailComponent implements OnInit {
   post: Post | null = null;
   comments: Comment[] = [];
+  nextCursor: string | null = null;
+  isLoadingComments = false;
   commentForm!: FormGroup;
   isSubmittingComment = false;
   
@@ -50,6 +52,8 @@ export class PostDetailComponent implements OnInit {
       .subscribe({
         next: (post: Post) => {
           this.post = post;
+          this.comments = [];
+          this.nextCursor = null;
           this.loadComments(+postId);
         },
         error: (err) => {
@@ -59,19 +63,31 @@ export class PostDetailComponent implements OnInit {
   }
 
   loadComments(postId: number): void {
+    this.isLoadingComments = true;
 
-    this.commentService.getCommentsByPost(postId)
+    this.commentService.getCommentsPage(postId, this.nextCursor)
       .pipe(takeUntilDestroyed(this.destroyRef))
       .subscribe({
-        next: (comments: Comment[]) => {
-          this.comments = comments;
+        next: (page: CursorPage<Comment>) => {
+          // Un commentaire ajouté entre-temps peut déjà figurer dans la liste
+          const knownIds = new Set(this.comments.map(comment => comment.id));
+          this.comments = this.comments.concat(page.items.filter(comment => !knownIds.has(comment.id)));
+          this.nextCursor = page.next;
+          this.isLoadingComments = false;
         },
         error: (err) => {
           console.error('Erreur lors du chargement des commentaires', err);
+          this.isLoadingComments = false;
         }
       });
   }
 
+  loadMoreComments(): void {
+    if (this.post?.id && this.nextCursor && !this.isLoadingComments) {
+      this.loadComments(this.post.id);
+    }
+  }
+
   onSubmitComment(): void {
     if (this.commentForm.invalid || !this.post?.id) {
       return;
@@ -1,5 +1,5 @@
 import { Component, Input, OnInit } from '@angular/core';
-import { Post } from 'src/app/models/post.model';
+import { PostSummary } from 'src/app/models/post.model';
 
 @Component({
   selector: 'app-post-item',
@@ -7,7 +7,7 @@ import { Post } from 'src/app/models/post.model';
   styleUrls: ['./post-item.component.scss']
 })
 export class PostItemComponent implements OnInit {
-  @Input() post!: Post;
+  @Input() post!: PostSummary;
 
   constructor() { }
 
@@ -1,20 +1,25 @@
 import { Component, OnInit, DestroyRef, inject } from '@angular/core';
 import { takeUntilDestroyed } from '@angular/core/rxjs-interop';
 import { PostService } from 'src/app/services/post.service';
-import { Post } from 'src/app/models/post.model';
+import { CursorPage, PostSummary } from 'src/app/models/post.model';
 
 type SortOrder = 'asc' | 'desc';
 
+const PAGE_SIZE = 20;
+
 @Component({
   selector: 'app-posts-list',
   templateUrl: './posts-list.component.html',
   styleUrls: ['./posts-list.component.scss']
 })
 export class PostsListComponent implements OnInit {
-  posts: Post[] = [];
-  originalPosts: Post[] = [];
+  posts: PostSummary[] = [];
   isLoading = false;
   error: string | null = null;
+
+  // Pagination du fil par curseur : l'API indique la position de la page suivante, null sur la dernière
+  private nextCursor: string | null = null;
+  hasMore = false;
   
   // Propriétés pour le tri par date
   currentSortOrder: SortOrder = 'desc'; // Le plus récent en premier par défaut
@@ -29,21 +34,40 @@ export class PostsListComponent implements OnInit {
   }
 
   loadPosts(): void {
+    this.nextCursor = null;
+    this.posts = [];
+    this.fetchPage();
+  }
+
+  /**
+   * Ajoute la page suivante du fil à la liste affichée
+   */
+  loadMore(): void {
+    if (this.isLoading || !this.hasMore) {
+      return;
+    }
+    this.fetchPage();
+  }
+
+  private fetchPage(): void {
     this.isLoading = true;
     this.error = null;
 
-    this.postService.getAllPosts()
+    // Le filtrage par abonnements, le tri par date et la pagination sont faits par l'API
+    const cursor = this.nextCursor;
+    this.postService.getFeed(this.currentSortOrder, cursor, PAGE_SIZE)
       .pipe(takeUntilDestroyed(this.destroyRef))
       .subscribe({
-        next: (data: Post[]) => {
-          this.originalPosts = [...data];
-          this.posts = [...data];
-          this.applySorting(); // Applique le tri par défaut (plus récent en premier)
+        next: (page: CursorPage<PostSummary>) => {
+          this.posts = cursor === null ? page.items : [...this.posts, ...page.items];
+          this.nextCursor = page.next;
+          this.hasMore = page.next !== null;
           this.isLoading = false;
         },
         error: (err) => {
           console.error('Erreur lors du chargement des articles', err);
           this.error = 'Une erreur est survenue lors du chargement des articles.';
+          // Le curseur n'a pas avancé : la même page pourra être redemandée
           this.isLoading = false;
         }
       });
@@ -77,16 +101,10 @@ export class PostsListComponent implements OnInit {
   }
 
   /**
-   * Applique le tri par date aux articles
+   * Recharge le fil avec l'ordre de tri courant
    */
   applySorting(): void {
-    this.posts = [...this.originalPosts].sort((a, b) => {
-      const dateA = a.createdAt ? new Date(a.createdAt).getTime() : 0;
-      const dateB = b.createdAt ? new Date(b.createdAt).getTime() : 0;
-      // Pour 'desc' (plus récent): dateB - dateA (récent en premier)
-      // Pour 'asc' (plus ancien): dateA - dateB (ancien en premier)
-      return this.currentSortOrder === 'desc' ? dateB - dateA : dateA - dateB;
-    });
+    this.loadPosts();
   }
 
   /**
@@ -9,6 +9,18 @@ export interface Post {
   theme?: Theme;
 }
 
+export interface PostSummary {
+  id: number;
+  title: string;
+  excerpt: string;
+  createdAt: Date;
+  authorId: number;
+  authorUsername: string;
+  themeId?: number;
+  themeName?: string;
+  commentCount: number;
+}
+
 export interface Theme {
   id?: number;
   name: string;
@@ -23,3 +35,9 @@ export interface Comment {
   createdAt?: Date;
   updatedAt?: Date;
 }
+
+export interface CursorPage<T> {
+  items: T[];
+  next: string | null;
+  limit: number;
+}
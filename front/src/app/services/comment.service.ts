@@ -1,8 +1,8 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from 'src/environments/environment';
-import { Comment } from '../models/post.model';
+import { Comment, CursorPage } from '../models/post.model';
 
 @Injectable({
   providedIn: 'root'
@@ -12,8 +12,19 @@ export class CommentService {
 
   constructor(private http: HttpClient) { }
 
-  getCommentsByPost(postId: number): Observable<Comment[]> {
-    return this.http.get<Comment[]>(`${this.apiUrl}/post/${postId}`);
+  getCommentsPage(postId: number, cursor: string | null, limit = 20): Observable<CursorPage<Comment>> {
+    let params = new HttpParams().set('limit', limit);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<CursorPage<Comment>>(`${this.apiUrl}/post/${postId}`, { params });
+  }
+
+  getLatestCommentsByPosts(postIds: number[], perPost = 3): Observable<Record<number, Comment[]>> {
+    const params = new HttpParams()
+      .set('postIds', postIds.join(','))
+      .set('perPost', perPost);
+    return this.http.get<Record<number, Comment[]>>(this.apiUrl, { params });
   }
 
   createComment(postId: number, comment: Comment): Observable<Comment> {
@@ -1,8 +1,8 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from 'src/environments/environment';
-import { Post } from '../models/post.model';
+import { CursorPage, Post, PostSummary } from '../models/post.model';
 
 @Injectable({
   providedIn: 'root'
@@ -12,20 +12,28 @@ export class PostService {
 
   constructor(private http: HttpClient) { }
 
-  getAllPosts(): Observable<Post[]> {
-    return this.http.get<Post[]>(this.apiUrl);
+  getFeed(order: 'asc' | 'desc' = 'desc', cursor?: string | null, limit = 20): Observable<CursorPage<PostSummary>> {
+    let params = new HttpParams()
+      .set('order', order)
+      .set('limit', limit);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<CursorPage<PostSummary>>(`${environment.apiUrl}/feed`, { params });
   }
 
   getPostById(id: number): Observable<Post> {
     return this.http.get<Post>(`${this.apiUrl}/${id}`);
   }
 
-  getPostsByTheme(themeId: number): Observable<Post[]> {
-    return this.http.get<Post[]>(`${this.apiUrl}/theme/${themeId}`);
+  getPostsByTheme(themeId: number, cursor?: string): Observable<CursorPage<PostSummary>> {
+    const params = cursor ? new HttpParams().set('cursor', cursor) : undefined;
+    return this.http.get<CursorPage<PostSummary>>(`${this.apiUrl}/theme/${themeId}`, { params });
   }
 
-  getPostsByUser(userId: number): Observable<Post[]> {
-    return this.http.get<Post[]>(`${this.apiUrl}/user/${userId}`);
+  getPostsByUser(userId: number, cursor?: string): Observable<CursorPage<PostSummary>> {
+    const params = cursor ? new HttpParams().set('cursor', cursor) : undefined;
+    return this.http.get<CursorPage<PostSummary>>(`${this.apiUrl}/user/${userId}`, { params });
   }
 
   createPost(post: Post): Observable<Post> {